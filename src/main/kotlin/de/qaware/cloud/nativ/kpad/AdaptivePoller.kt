@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.Executor
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs a task repeatedly with an interval that adapts to the activity. While busy the task runs with
+ * the minimum interval, otherwise the interval doubles after every run up to the maximum. The next run
+ * is scheduled when the stage returned by the previous one has completed, so two runs never overlap
+ * and no thread waits for a run to complete.
+ *
+ * @param executor starts the task, the scheduler only waits for the interval
+ * @param busy tells if the task should run with the minimum interval
+ */
+class AdaptivePoller(private val scheduler: ScheduledExecutorService,
+                     private val executor: Executor,
+                     private val minInterval: Long,
+                     private val maxInterval: Long,
+                     private val busy: () -> Boolean,
+                     private val task: () -> CompletionStage<*>) {
+
+    /**
+     * The current interval in milliseconds.
+     */
+    @Volatile
+    var interval = minInterval
+        private set
+
+    private var next: ScheduledFuture<*>? = null
+    private var running = false
+    private var stopped = false
+    // run again right after the current run
+    private var again = false
+
+    @Synchronized
+    fun start() {
+        stopped = false
+        schedule(0)
+    }
+
+    @Synchronized
+    fun stop() {
+        stopped = true
+        next?.cancel(false)
+    }
+
+    /**
+     * Return to the minimum interval at once, e.g. after a change was requested.
+     */
+    @Synchronized
+    fun wake() {
+        interval = minInterval
+        val next = this.next ?: return
+        if (!running && next.getDelay(TimeUnit.MILLISECONDS) > minInterval && next.cancel(false)) {
+            schedule(minInterval)
+        }
+    }
+
+    /**
+     * Run the task as soon as possible, e.g. after the polled state was cleared. A running task is
+     * followed by the next run at once.
+     */
+    @Synchronized
+    fun runNow() {
+        interval = minInterval
+        if (running) {
+            again = true
+            return
+        }
+        val next = this.next ?: return
+        if (next.cancel(false)) schedule(0)
+    }
+
+    private fun schedule(delay: Long) {
+        if (!stopped) next = scheduler.schedule({ executor.execute { run() } }, delay, TimeUnit.MILLISECONDS)
+    }
+
+    private fun run() {
+        synchronized(this) {
+            if (stopped) return
+            running = true
+        }
+        val stage = try {
+            task()
+        } catch (e: RuntimeException) {
+            CompletableFuture<Unit>().apply { completeExceptionally(e) }
+        }
+        stage.whenComplete { _, _ -> finished() }
+    }
+
+    private fun finished() {
+        val busy = busy()
+        synchronized(this) {
+            running = false
+            interval = if (busy) minInterval else Math.min(interval * 2, maxInterval)
+            schedule(if (again) 0 else interval)
+            again = false
+        }
+    }
+}
@@ -23,6 +23,8 @@
  */
 package de.qaware.cloud.nativ.kpad
 
+import java.util.concurrent.CompletionStage
+
 /**
  * Generic interface definition to interact with different cluster schedulers.
  */
@@ -58,6 +60,23 @@ interface Cluster {
      */
     fun scale(appIndex: Int, replicas: Int)
 
+    /**
+     * True if the cluster can scale many apps with one request in [scaleAll]. Otherwise the apps are
+     * scaled one by one with [scale].
+     */
+    val bulkScale: Boolean
+        get() = false
+
+    /**
+     * Scale several apps with one request. Only called if [bulkScale] is true, clusters without a bulk API
+     * are scaled row by row with [scale].
+     *
+     * @param replicas the number of replicas by app index
+     * @return the result by app index, true if the app was scaled
+     */
+    fun scaleAll(replicas: Map<Int, Int>): CompletionStage<Map<Int, Boolean>> =
+            throw UnsupportedOperationException("No bulk API to scale many apps at once.")
+
     /**
      * Clears the local list of apps. This will cause all apps to be readded.
      */
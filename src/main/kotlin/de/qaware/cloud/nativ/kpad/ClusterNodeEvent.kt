@@ -58,4 +58,9 @@ data class ClusterNodeEvent(val row: Int, val column: Int) {
     @Target(AnnotationTarget.TYPE, AnnotationTarget.FUNCTION, AnnotationTarget.VALUE_PARAMETER, AnnotationTarget.FIELD)
     @Retention(AnnotationRetention.RUNTIME)
     annotation class Stopped
+
+    @Qualifier
+    @Target(AnnotationTarget.TYPE, AnnotationTarget.FUNCTION, AnnotationTarget.VALUE_PARAMETER, AnnotationTarget.FIELD)
+    @Retention(AnnotationRetention.RUNTIME)
+    annotation class Failed
 }
\ No newline at end of file
@@ -25,7 +25,9 @@ package de.qaware.cloud.nativ.kpad
 
 import de.qaware.cloud.nativ.kpad.launchpad.LaunchpadMK2
 import org.slf4j.Logger
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicInteger
 import javax.annotation.PostConstruct
 import javax.annotation.PreDestroy
 import javax.enterprise.context.ApplicationScoped
@@ -54,6 +56,9 @@ open class ClusterNodeGrid @Inject constructor(@Named("default")
 
     private val colors = Array(8, { i -> LaunchpadMK2.Color.values()[i + 1] })
 
+    // scale calls of one row keep their order, different rows are scaled in parallel
+    private val rows = Array(8, { _ -> SerialExecutor(executor) })
+
     /**
      * Initialize the cloud node grid.
      */
@@ -88,7 +93,7 @@ open class ClusterNodeGrid @Inject constructor(@Named("default")
 
         node.activate().update(ClusterNode.Phase.Pending)
         starting(node)
-        executor.execute { cluster.scale(event.row, running + 1) }
+        rows[event.row].execute { cluster.scale(event.row, running + 1) }
     }
 
     /**
@@ -104,25 +109,75 @@ open class ClusterNodeGrid @Inject constructor(@Named("default")
 
         node.update(ClusterNode.Phase.Succeeded)
         stopping(node)
-        executor.execute { cluster.scale(event.row, running - 1) }
+        rows[event.row].execute { cluster.scale(event.row, running - 1) }
     }
 
     open fun stopAll() {
-        0.until(8).forEach {
-            if (cluster.replicas(it) > 0) {
-                scale(it, 0)
-            }
-        }
+        scaleAll(0.until(8).filter { cluster.replicas(it) > 0 }.associate { it to 0 })
     }
 
     open fun startAll() {
-        0.until(8).forEach {
-            if (cluster.replicas(it) == 0) {
-                scale(it, 1)
+        scaleAll(0.until(8).filter { cluster.replicas(it) == 0 }.associate { it to 1 })
+    }
+
+    /**
+     * Scale several rows. Clusters with a bulk API are scaled with a single call, all others row by row
+     * in parallel. Rows that could not be scaled are shown as failed.
+     *
+     * @param replicas the number of replicas by row
+     */
+    open fun scaleAll(replicas: Map<Int, Int>) {
+        if (replicas.isEmpty()) return
+
+        if (cluster.bulkScale) {
+            bulk(replicas)
+        } else {
+            replicas.forEach { row, count -> rows[row].execute { scaleRow(row, count) } }
+        }
+        replicas.forEach { row, count -> display(row, count) }
+    }
+
+    /**
+     * Scale the rows with a single call, ordered like a scale call of each row. The call is made once
+     * the earlier scale calls of all rows are done, later ones wait until it has completed.
+     */
+    private fun bulk(replicas: Map<Int, Int>) {
+        val waiting = AtomicInteger(replicas.size)
+        val done = CompletableFuture<Void>()
+
+        replicas.keys.forEach { row ->
+            rows[row].executeAsync {
+                if (waiting.decrementAndGet() == 0) {
+                    try {
+                        cluster.scaleAll(replicas).whenComplete { results, e ->
+                            scaled(replicas, results, e)
+                            done.complete(null)
+                        }
+                    } catch (e: Exception) {
+                        scaled(replicas, null, e)
+                        done.complete(null)
+                    }
+                }
+                done
             }
         }
     }
 
+    private fun scaleRow(row: Int, replicas: Int) {
+        try {
+            cluster.scale(row, replicas)
+        } catch (e: Exception) {
+            scaled(mapOf(row to replicas), null, e)
+        }
+    }
+
+    private fun scaled(replicas: Map<Int, Int>, results: Map<Int, Boolean>?, e: Throwable?) {
+        replicas.keys.filter { e != null || results?.get(it) != true }.forEach {
+            logger.error("Scaling row {} to {} replicas failed.", it, replicas[it], e)
+            failed(ClusterNode(it, 8))
+        }
+    }
+
     /**
      * Scale the deployment at given row to number of specified replicas.
      *
@@ -130,8 +185,11 @@ open class ClusterNodeGrid @Inject constructor(@Named("default")
      * @param replicas number of replicas
      */
     open fun scale(row: Int, replicas: Int) {
-        executor.execute { cluster.scale(row, replicas) }
+        rows[row].execute { cluster.scale(row, replicas) }
+        display(row, replicas)
+    }
 
+    private fun display(row: Int, replicas: Int) {
         val active = grid[row].filter { it.active.get() }
 
         if (active.count() > replicas) { // scale down, stop nodes and update display
@@ -231,14 +289,23 @@ open class ClusterNodeGrid @Inject constructor(@Named("default")
                 }
             }
 
+            ClusterAppEvent.Type.FAILED -> {
+                failed(ClusterNode(event.index, 8))
+            }
+
             ClusterAppEvent.Type.DEPLOYED -> {
+                // the replicas of the event are ready, only that many squares are shown as running
+                var running = nodes.count { it.active.get() && it.phase == ClusterNode.Phase.Running }
+                var active = nodes.count { it.active.get() }
                 nodes.forEach {
                     when (it.phase) {
-                        ClusterNode.Phase.Pending -> {
+                        ClusterNode.Phase.Pending -> if (running < event.replicas) {
+                            running++
                             it.update(ClusterNode.Phase.Running)
                             started(it)
                         }
-                        ClusterNode.Phase.Succeeded -> {
+                        ClusterNode.Phase.Succeeded -> if (active > event.replicas) {
+                            active--
                             it.deactivate()
                             stopped(it)
                         }
@@ -250,6 +317,34 @@ open class ClusterNodeGrid @Inject constructor(@Named("default")
         }
     }
 
+    /**
+     * The event callback in case the pods of an app have changed. Every active square shows the phase
+     * of one pod, squares that are being stopped are left alone.
+     *
+     * @param event the pod event
+     */
+    open fun onPodEvent(@Observes event: ClusterPodEvent) {
+        if (!initialized) {
+            logger.debug("Ignoring event {}.", event)
+            return
+        }
+
+        val nodes = grid[event.index]
+        event.phases.take(nodes.size).forEachIndexed { column, phase ->
+            val node = nodes[column]
+            if (node.active.get() && node.phase != phase && node.phase != ClusterNode.Phase.Succeeded) {
+                node.update(phase)
+                when (phase) {
+                    ClusterNode.Phase.Pending -> starting(node)
+                    ClusterNode.Phase.Running -> started(node)
+                    ClusterNode.Phase.Failed -> failed(node)
+                    else -> {
+                    }
+                }
+            }
+        }
+    }
+
     private fun starting(node: ClusterNode) {
         events.select(object : AnnotationLiteral<ClusterNodeEvent.Starting>() {})
                 .fire(ClusterNodeEvent(node.row, node.column))
@@ -260,6 +355,11 @@ open class ClusterNodeGrid @Inject constructor(@Named("default")
                 .fire(ClusterNodeEvent(node.row, node.column))
     }
 
+    private fun failed(node: ClusterNode) {
+        events.select(object : AnnotationLiteral<ClusterNodeEvent.Failed>() {})
+                .fire(ClusterNodeEvent(node.row, node.column))
+    }
+
     private fun stopping(node: ClusterNode) {
         events.select(object : AnnotationLiteral<ClusterNodeEvent.Stopping>() {})
                 .fire(ClusterNodeEvent(node.row, node.column))
@@ -38,9 +38,12 @@ import javax.inject.Named
 @ApplicationScoped
 class ExecutorProducer {
 
+    /**
+     * One thread per row of the grid, so all rows can be scaled at the same time.
+     */
     @Produces
     @Named("default")
-    fun executor(): ExecutorService = Executors.newFixedThreadPool(4)
+    fun executor(): ExecutorService = Executors.newFixedThreadPool(8)
 
     @Produces
     @Named("scheduled")
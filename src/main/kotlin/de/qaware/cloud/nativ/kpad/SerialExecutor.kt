@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad
+
+import java.util.*
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.Executor
+
+/**
+ * An executor that runs its tasks one after another in submission order on a shared executor.
+ * Tasks of different serial executors run concurrently.
+ */
+class SerialExecutor(private val executor: Executor) : Executor {
+
+    private val tasks: Queue<Runnable> = ArrayDeque<Runnable>()
+    private var active: Runnable? = null
+
+    @Synchronized
+    override fun execute(task: Runnable) {
+        tasks.offer(Runnable {
+            try {
+                task.run()
+            } finally {
+                next()
+            }
+        })
+        if (active == null) {
+            next()
+        }
+    }
+
+    /**
+     * Run a task that starts asynchronous work. The following tasks wait until the returned stage
+     * completes, without blocking a thread of the shared executor.
+     */
+    @Synchronized
+    fun executeAsync(task: () -> CompletionStage<*>) {
+        tasks.offer(Runnable {
+            val stage = try {
+                task()
+            } catch (e: RuntimeException) {
+                next()
+                throw e
+            }
+            stage.whenComplete { _, _ -> next() }
+        })
+        if (active == null) {
+            next()
+        }
+    }
+
+    @Synchronized
+    private fun next() {
+        active = tasks.poll()
+        if (active != null) {
+            executor.execute(active)
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.node.MissingNode
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.client.utils.Serialization
+import okhttp3.ResponseBody
+import okio.BufferedSource
+
+/**
+ * Decodes the responses of list and watch requests in one wire format.
+ */
+interface Codec<T> {
+
+    /**
+     * The media type requested from the server.
+     */
+    val mediaType: String
+
+    /**
+     * Decode one page of a list.
+     */
+    fun page(body: ResponseBody): Page<T>
+
+    /**
+     * Decode the next event of a watch.
+     *
+     * @return the event, or null if the server has ended the watch
+     */
+    fun next(source: BufferedSource): WatchEvent<T>?
+}
+
+/**
+ * One page of a list.
+ *
+ * @param token the continue token for the next page, null for the last page
+ */
+class Page<out T>(val items: List<T>, val resourceVersion: String?, val token: String?)
+
+/**
+ * One event of a watch. Resource events carry the resource, bookmarks only the resource version and
+ * errors the status code and message.
+ */
+class WatchEvent<out T>(val type: String,
+                        val resource: T? = null,
+                        val resourceVersion: String? = null,
+                        val code: Int = 0,
+                        val message: String? = null)
+
+/**
+ * The JSON wire format. Resources are decoded while they are parsed, so with a lightweight type like
+ * [Workload] the fields it does not declare are skipped and never kept in memory.
+ */
+class JsonCodec<T : HasMetadata>(private val type: Class<T>) : Codec<T> {
+
+    private val mapper = Serialization.jsonMapper()
+
+    override val mediaType = "application/json"
+
+    /**
+     * Decode a page of the list while it is parsed, without building a tree of the whole page.
+     */
+    override fun page(body: ResponseBody): Page<T> {
+        mapper.factory.createParser(body.charStream()).use { parser ->
+            val items = ArrayList<T>()
+            var metadata: JsonNode = MissingNode.getInstance()
+
+            parser.nextToken()
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                val field = parser.currentName
+                parser.nextToken()
+                when (field) {
+                    "metadata" -> metadata = mapper.readTree<JsonNode>(parser)
+                    "items" -> if (parser.currentToken == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) items.add(mapper.readValue(parser, type))
+                    }
+                    else -> parser.skipChildren()
+                }
+            }
+
+            return Page(items, metadata.path("resourceVersion").asText(null),
+                    metadata.path("continue").asText(null)?.takeIf { it.isNotEmpty() })
+        }
+    }
+
+    /**
+     * Decode the next line of the watch. The object is decoded straight from the parser, the API
+     * server always writes the type of the event first.
+     */
+    override fun next(source: BufferedSource): WatchEvent<T>? {
+        var line = ""
+        while (line.isBlank()) {
+            line = source.readUtf8Line() ?: return null
+        }
+
+        mapper.factory.createParser(line).use { parser ->
+            var type = ""
+            parser.nextToken()
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                val field = parser.currentName
+                parser.nextToken()
+                when (field) {
+                    "type" -> type = parser.text
+                    "object" -> return event(type, parser)
+                    else -> parser.skipChildren()
+                }
+            }
+            return WatchEvent(type)
+        }
+    }
+
+    private fun event(type: String, parser: JsonParser): WatchEvent<T> {
+        when (type) {
+            "ADDED", "MODIFIED", "DELETED" -> return WatchEvent(type, mapper.readValue(parser, this.type))
+        }
+
+        val node = mapper.readTree<JsonNode>(parser)
+        return WatchEvent(type,
+                resourceVersion = node.path("metadata").path("resourceVersion").asText(null),
+                code = node.path("code").asInt(),
+                message = node.path("message").asText(null))
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+/**
+ * Decodes apps/v1 Deployments in the protobuf wire format into a [Workload]. The field numbers are
+ * those of k8s.io/api/apps/v1/generated.proto.
+ */
+class DeploymentProtobufCodec : ProtobufCodec<Workload>() {
+
+    override fun decode(reader: ProtobufReader): Workload {
+        val workload = Workload()
+        reader.fields { field ->
+            when (field) {
+                1 -> workload.metadata = metadata(reader.message())
+                2 -> spec(reader.message(), workload.spec)
+                3 -> status(reader.message(), workload.status)
+                else -> reader.skip()
+            }
+        }
+        return workload
+    }
+
+    private fun spec(reader: ProtobufReader, spec: Workload.Spec) {
+        reader.fields { field ->
+            when (field) {
+                1 -> spec.replicas = reader.int()
+                else -> reader.skip()
+            }
+        }
+    }
+
+    private fun status(reader: ProtobufReader, status: Workload.Status) {
+        reader.fields { field ->
+            when (field) {
+                1 -> status.observedGeneration = reader.varint()
+                2 -> status.replicas = reader.int()
+                3 -> status.updatedReplicas = reader.int()
+                7 -> status.readyReplicas = reader.int()
+                else -> reader.skip()
+            }
+        }
+    }
+}
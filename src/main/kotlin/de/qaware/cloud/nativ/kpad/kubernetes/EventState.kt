@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import com.fasterxml.jackson.databind.JsonDeserializer
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.api.model.ObjectMeta
+
+/**
+ * A lightweight view of a core Event with the object it is about and why it was reported.
+ */
+@JsonDeserialize(using = JsonDeserializer.None::class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+class EventState : HasMetadata {
+
+    private var apiVersion: String? = null
+    private var kind: String? = null
+    private var metadata: ObjectMeta? = null
+
+    var involvedObject = Reference()
+    var type: String? = null
+    var reason: String? = null
+    var message: String? = null
+
+    override fun getApiVersion() = apiVersion
+
+    override fun setApiVersion(apiVersion: String?) {
+        this.apiVersion = apiVersion
+    }
+
+    override fun getKind() = kind
+
+    fun setKind(kind: String?) {
+        this.kind = kind
+    }
+
+    override fun getMetadata() = metadata
+
+    @JsonDeserialize(using = MetadataDeserializer::class)
+    override fun setMetadata(metadata: ObjectMeta?) {
+        this.metadata = metadata
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    class Reference {
+        var kind: String? = null
+        var namespace: String? = null
+        var name: String? = null
+        var uid: String? = null
+    }
+}
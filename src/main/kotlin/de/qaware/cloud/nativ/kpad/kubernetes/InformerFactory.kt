@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable
+import io.fabric8.kubernetes.client.dsl.base.OperationSupport
+import okhttp3.OkHttpClient
+import org.slf4j.Logger
+import java.util.concurrent.ScheduledExecutorService
+
+/**
+ * Creates and shares the informers of one cluster. All informers use the same HTTP client and scheduler,
+ * and there is only one informer, and so only one list and watch, for each resource URL and selector.
+ */
+open class InformerFactory(private val httpClient: OkHttpClient,
+                           private val scheduler: ScheduledExecutorService,
+                           private val logger: Logger) {
+
+    private val informers = LinkedHashMap<String, ResourceInformer<*>>()
+
+    /**
+     * Get the informer for the resources of an operation, it is created on first use.
+     *
+     * @param type the type the resources are decoded to
+     * @param operation the operation of the resources, only its URL is used
+     * @param selector the label selector applied by the server
+     * @param absent the labels the resources must not have, also applied by the server
+     * @param fields the field selector applied by the server
+     * @param codec the wire format of the responses
+     */
+    @Suppress("UNCHECKED_CAST")
+    @Synchronized
+    open fun <T : HasMetadata> informer(type: Class<T>,
+                                        operation: FilterWatchListDeletable<*, *, *, *, *>,
+                                        selector: Map<String, String> = emptyMap(),
+                                        absent: Set<String> = emptySet(),
+                                        fields: Map<String, String> = emptyMap(),
+                                        codec: Codec<T> = JsonCodec(type)): ResourceInformer<T> {
+        val key = "${(operation as OperationSupport).namespacedUrl}?$selector&$absent&$fields"
+        return informers.getOrPut(key) {
+            ResourceInformer(type, operation, httpClient, scheduler, logger, selector, absent, fields, codec)
+        } as ResourceInformer<T>
+    }
+
+    /**
+     * Run all informers one after the other, see [ResourceInformer.run].
+     */
+    @Synchronized
+    open fun run(enough: () -> Boolean = { false }) {
+        informers.values.forEach { it.run(enough) }
+    }
+
+    @Synchronized
+    open fun stop() {
+        informers.values.forEach { it.stop() }
+    }
+}
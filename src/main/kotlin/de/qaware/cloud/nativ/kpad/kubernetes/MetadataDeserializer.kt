@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.databind.DeserializationContext
+import com.fasterxml.jackson.databind.JsonDeserializer
+import io.fabric8.kubernetes.api.model.ObjectMeta
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder
+import io.fabric8.kubernetes.api.model.OwnerReference
+
+/**
+ * Decodes only the object metadata used by the launchpad. Annotations and managed fields, usually the
+ * largest part of the metadata, are skipped by the parser.
+ */
+internal class MetadataDeserializer : JsonDeserializer<ObjectMeta>() {
+
+    override fun deserialize(parser: JsonParser, context: DeserializationContext): ObjectMeta {
+        val metadata = parser.readValueAs(Metadata::class.java)
+        return ObjectMetaBuilder()
+                .withName(metadata.name)
+                .withNamespace(metadata.namespace)
+                .withUid(metadata.uid)
+                .withResourceVersion(metadata.resourceVersion)
+                .withGeneration(metadata.generation)
+                .withCreationTimestamp(metadata.creationTimestamp)
+                .withDeletionTimestamp(metadata.deletionTimestamp)
+                .withLabels(metadata.labels)
+                .withOwnerReferences(metadata.ownerReferences)
+                .build()
+    }
+
+    /**
+     * The subset of the object metadata that is decoded.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private class Metadata {
+        var name: String? = null
+        var namespace: String? = null
+        var uid: String? = null
+        var resourceVersion: String? = null
+        var generation: Long? = null
+        var creationTimestamp: String? = null
+        var deletionTimestamp: String? = null
+        var labels: Map<String, String>? = null
+        var ownerReferences: List<OwnerReference>? = null
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import com.fasterxml.jackson.databind.JsonDeserializer
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize
+import de.qaware.cloud.nativ.kpad.ClusterNode
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.api.model.ObjectMeta
+
+/**
+ * A lightweight view of a Pod with only the fields needed to show it as a square: its owner and the
+ * state of its containers.
+ */
+@JsonDeserialize(using = JsonDeserializer.None::class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+class PodState : HasMetadata {
+
+    private var apiVersion: String? = null
+    private var kind: String? = null
+    private var metadata: ObjectMeta? = null
+
+    var status = Status()
+
+    override fun getApiVersion() = apiVersion
+
+    override fun setApiVersion(apiVersion: String?) {
+        this.apiVersion = apiVersion
+    }
+
+    override fun getKind() = kind
+
+    fun setKind(kind: String?) {
+        this.kind = kind
+    }
+
+    override fun getMetadata() = metadata
+
+    @JsonDeserialize(using = MetadataDeserializer::class)
+    override fun setMetadata(metadata: ObjectMeta?) {
+        this.metadata = metadata
+    }
+
+    /**
+     * Get the workload this pod belongs to as kind and name, e.g. Deployment/nginx. Pods of a Deployment
+     * are owned by a ReplicaSet named after the Deployment and the pod template hash, pods of a
+     * DeploymentConfig by a ReplicationController and labeled with the DeploymentConfig.
+     */
+    fun owner(): String? {
+        val owner = metadata?.ownerReferences?.firstOrNull { it.controller == true } ?: return null
+        val labels = metadata?.labels ?: emptyMap<String, String>()
+        val hash = labels["pod-template-hash"]
+
+        return when {
+            owner.kind == "ReplicaSet" && hash != null && owner.name.endsWith("-$hash") ->
+                "Deployment/${owner.name.removeSuffix("-$hash")}"
+            owner.kind == "ReplicationController" && labels.containsKey("deploymentconfig") ->
+                "DeploymentConfig/${labels["deploymentconfig"]}"
+            else -> "${owner.kind}/${owner.name}"
+        }
+    }
+
+    /**
+     * Check if the pod is being deleted.
+     */
+    fun terminating() = metadata?.deletionTimestamp != null
+
+    /**
+     * Get the phase of the square showing this pod. A pod only counts as running if all its containers
+     * are ready, and as failed as soon as one of its containers is crash looping or cannot be pulled.
+     */
+    fun phase(): ClusterNode.Phase {
+        val containers = status.containerStatuses ?: emptyList()
+        if (containers.any { FAILURES.contains(it.state?.waiting?.reason) }) {
+            return ClusterNode.Phase.Failed
+        }
+
+        return when (status.phase) {
+            "Pending" -> ClusterNode.Phase.Pending
+            "Running" -> if (containers.all { it.ready == true }) ClusterNode.Phase.Running else ClusterNode.Phase.Pending
+            "Succeeded" -> ClusterNode.Phase.Succeeded
+            "Failed" -> ClusterNode.Phase.Failed
+            else -> ClusterNode.Phase.Unknown
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    class Status {
+        var phase: String? = null
+        var containerStatuses: List<ContainerStatus>? = null
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    class ContainerStatus {
+        var ready: Boolean? = null
+        var state: ContainerState? = null
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    class ContainerState {
+        var waiting: Waiting? = null
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    class Waiting {
+        var reason: String? = null
+    }
+
+    companion object {
+        /** Reasons of waiting containers that will not recover by themselves. */
+        val FAILURES = setOf("CrashLoopBackOff", "ErrImagePull", "ImagePullBackOff", "InvalidImageName",
+                "CreateContainerConfigError", "CreateContainerError", "RunContainerError")
+    }
+}
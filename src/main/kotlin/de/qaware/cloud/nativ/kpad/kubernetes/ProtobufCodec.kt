@@ -0,0 +1,254 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.api.model.ObjectMeta
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder
+import io.fabric8.kubernetes.api.model.OwnerReference
+import io.fabric8.kubernetes.api.model.OwnerReferenceBuilder
+import okhttp3.ResponseBody
+import okio.BufferedSource
+import java.io.IOException
+import java.time.LocalDate
+
+/**
+ * The protobuf wire format of Kubernetes. Every object is wrapped in an envelope, the magic bytes
+ * "k8s\u0000" followed by a runtime.Unknown message with the encoded object. Watch events are framed by
+ * their length and are not wrapped, only the object inside each event is. Subclasses decode the fields
+ * of one kind, all other fields are skipped without being decoded.
+ */
+abstract class ProtobufCodec<T : HasMetadata> : Codec<T> {
+
+    override val mediaType = MEDIA_TYPE
+
+    /**
+     * Decode one object from its fields.
+     */
+    protected abstract fun decode(reader: ProtobufReader): T
+
+    override fun page(body: ResponseBody): Page<T> {
+        val reader = unwrap(ProtobufReader(body.bytes()))
+        val items = ArrayList<T>()
+        var resourceVersion: String? = null
+        var token: String? = null
+
+        reader.fields { field ->
+            when (field) {
+                1 -> {
+                    val metadata = reader.message()
+                    metadata.fields { inner ->
+                        when (inner) {
+                            2 -> resourceVersion = metadata.string()
+                            3 -> token = metadata.string().takeIf { it.isNotEmpty() }
+                            else -> metadata.skip()
+                        }
+                    }
+                }
+                2 -> items.add(decode(reader.message()))
+                else -> reader.skip()
+            }
+        }
+
+        return Page(items, resourceVersion, token)
+    }
+
+    override fun next(source: BufferedSource): WatchEvent<T>? {
+        if (source.exhausted()) return null
+        val frame = source.readByteArray(source.readInt().toLong())
+
+        // a bare metav1.WatchEvent
+        val reader = ProtobufReader(frame)
+        var type = ""
+        var raw: ProtobufReader? = null
+        reader.fields { field ->
+            when (field) {
+                1 -> type = reader.string()
+                2 -> {
+                    // a runtime.RawExtension with the encoded object
+                    val extension = reader.message()
+                    extension.fields { inner ->
+                        when (inner) {
+                            1 -> raw = unwrap(extension.message())
+                            else -> extension.skip()
+                        }
+                    }
+                }
+                else -> reader.skip()
+            }
+        }
+
+        val value = raw ?: return WatchEvent(type)
+        return when (type) {
+            "ADDED", "MODIFIED", "DELETED" -> WatchEvent(type, decode(value))
+            "BOOKMARK" -> WatchEvent(type, resourceVersion = decode(value).metadata?.resourceVersion)
+            else -> status(type, value)
+        }
+    }
+
+    /**
+     * Decode the fields of the object metadata used by the launchpad.
+     */
+    protected fun metadata(reader: ProtobufReader): ObjectMeta {
+        val metadata = ObjectMetaBuilder()
+        val labels = LinkedHashMap<String, String>()
+        val owners = ArrayList<OwnerReference>()
+
+        reader.fields { field ->
+            when (field) {
+                1 -> metadata.withName(reader.string())
+                3 -> metadata.withNamespace(reader.string())
+                5 -> metadata.withUid(reader.string())
+                6 -> metadata.withResourceVersion(reader.string())
+                7 -> metadata.withGeneration(reader.varint())
+                8 -> metadata.withCreationTimestamp(time(reader.message()))
+                9 -> metadata.withDeletionTimestamp(time(reader.message()))
+                11 -> {
+                    val entry = reader.message()
+                    var key = ""
+                    var value = ""
+                    entry.fields { inner ->
+                        when (inner) {
+                            1 -> key = entry.string()
+                            2 -> value = entry.string()
+                            else -> entry.skip()
+                        }
+                    }
+                    labels[key] = value
+                }
+                13 -> owners.add(owner(reader.message()))
+                else -> reader.skip()
+            }
+        }
+
+        return metadata.withLabels(labels).withOwnerReferences(owners).build()
+    }
+
+    private fun owner(reader: ProtobufReader): OwnerReference {
+        val owner = OwnerReferenceBuilder()
+        reader.fields { field ->
+            when (field) {
+                1 -> owner.withKind(reader.string())
+                3 -> owner.withName(reader.string())
+                4 -> owner.withUid(reader.string())
+                5 -> owner.withApiVersion(reader.string())
+                6 -> owner.withController(reader.bool())
+                else -> reader.skip()
+            }
+        }
+        return owner.build()
+    }
+
+    private fun time(reader: ProtobufReader): String {
+        var seconds = 0L
+        reader.fields { field ->
+            when (field) {
+                1 -> seconds = reader.varint()
+                else -> reader.skip()
+            }
+        }
+        return timestamp(seconds)
+    }
+
+    /**
+     * Format a time like the JSON encoding does, e.g. 2018-01-01T00:00:00Z. Much cheaper than
+     * Instant.toString() which is noticeable when decoding long lists.
+     */
+    private fun timestamp(seconds: Long): String {
+        val date = LocalDate.ofEpochDay(Math.floorDiv(seconds, SECONDS_PER_DAY))
+        val time = Math.floorMod(seconds, SECONDS_PER_DAY).toInt()
+        val builder = StringBuilder(20).append(date.year)
+        pad(builder.append('-'), date.monthValue)
+        pad(builder.append('-'), date.dayOfMonth)
+        pad(builder.append('T'), time / 3600)
+        pad(builder.append(':'), time / 60 % 60)
+        pad(builder.append(':'), time % 60)
+        return builder.append('Z').toString()
+    }
+
+    private fun pad(builder: StringBuilder, value: Int) {
+        if (value < 10) builder.append('0')
+        builder.append(value)
+    }
+
+    private fun status(type: String, reader: ProtobufReader): WatchEvent<T> {
+        var code = 0
+        var message: String? = null
+        reader.fields { field ->
+            when (field) {
+                3 -> message = reader.string()
+                6 -> code = reader.int()
+                else -> reader.skip()
+            }
+        }
+        return WatchEvent(type, code = code, message = message)
+    }
+
+    companion object {
+        const val MEDIA_TYPE = "application/vnd.kubernetes.protobuf"
+
+        private const val SECONDS_PER_DAY = 86400L
+
+        private val MAGIC = byteArrayOf('k'.toByte(), '8'.toByte(), 's'.toByte(), 0)
+
+        /**
+         * Remove the envelope of an encoded object.
+         *
+         * @return a reader for the fields of the object
+         */
+        fun unwrap(reader: ProtobufReader): ProtobufReader {
+            if (!reader.prefix(MAGIC)) throw IOException("Not a Kubernetes protobuf message.")
+            reader.fields { field ->
+                when (field) {
+                    2 -> return reader.message()
+                    else -> reader.skip()
+                }
+            }
+            throw IOException("Kubernetes protobuf message without content.")
+        }
+
+        /**
+         * Get the resource version of an encoded object, e.g. a Scale.
+         */
+        fun resourceVersion(bytes: ByteArray): String? {
+            val reader = unwrap(ProtobufReader(bytes))
+            reader.fields { field ->
+                when (field) {
+                    1 -> {
+                        val metadata = reader.message()
+                        metadata.fields { inner ->
+                            when (inner) {
+                                6 -> return metadata.string()
+                                else -> metadata.skip()
+                            }
+                        }
+                        return null
+                    }
+                    else -> reader.skip()
+                }
+            }
+            return null
+        }
+    }
+}
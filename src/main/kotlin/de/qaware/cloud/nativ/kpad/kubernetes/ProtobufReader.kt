@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import java.io.IOException
+
+/**
+ * A minimal reader for the protocol buffers encoding. Embedded messages are read as views on the
+ * same buffer, so nothing is copied until a string is decoded.
+ */
+class ProtobufReader(private val buffer: ByteArray,
+                     private var position: Int = 0,
+                     private val limit: Int = buffer.size) {
+
+    private var wireType = 0
+
+    /**
+     * Read the key of the next field.
+     *
+     * @return the field number, or 0 at the end of the message
+     */
+    fun next(): Int {
+        if (position >= limit) return 0
+        val key = varint().toInt()
+        wireType = key and 7
+        return key ushr 3
+    }
+
+    /**
+     * Call the action with the number of each remaining field. The action has to read or skip the value.
+     */
+    inline fun fields(action: (Int) -> Unit) {
+        while (true) {
+            val field = next()
+            if (field == 0) return
+            action(field)
+        }
+    }
+
+    fun varint(): Long {
+        var result = 0L
+        var shift = 0
+        while (shift < 64) {
+            if (position >= limit) throw IOException("Truncated protobuf message.")
+            val b = buffer[position++].toInt()
+            result = result or ((b and 0x7f).toLong() shl shift)
+            if (b and 0x80 == 0) return result
+            shift += 7
+        }
+        throw IOException("Malformed protobuf varint.")
+    }
+
+    fun int() = varint().toInt()
+
+    fun bool() = varint() != 0L
+
+    fun string(): String {
+        val length = length()
+        val value = String(buffer, position, length, Charsets.UTF_8)
+        position += length
+        return value
+    }
+
+    fun bytes(): ByteArray {
+        val length = length()
+        val value = buffer.copyOfRange(position, position + length)
+        position += length
+        return value
+    }
+
+    /**
+     * Read an embedded message as a view on the same buffer.
+     */
+    fun message(): ProtobufReader {
+        val length = length()
+        val reader = ProtobufReader(buffer, position, position + length)
+        position += length
+        return reader
+    }
+
+    /**
+     * Skip the given prefix if the remaining bytes start with it.
+     *
+     * @return true if the prefix was found
+     */
+    fun prefix(bytes: ByteArray): Boolean {
+        if (limit - position < bytes.size) return false
+        if (bytes.indices.any { buffer[position + it] != bytes[it] }) return false
+        position += bytes.size
+        return true
+    }
+
+    /**
+     * Skip the value of the current field.
+     */
+    fun skip() {
+        when (wireType) {
+            0 -> varint()
+            1 -> position += 8
+            2 -> {
+                val length = length()
+                position += length
+            }
+            5 -> position += 4
+            else -> throw IOException("Unsupported protobuf wire type $wireType.")
+        }
+    }
+
+    private fun length(): Int {
+        val length = int()
+        if (length < 0 || position + length > limit) throw IOException("Truncated protobuf message.")
+        return length
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import io.fabric8.kubernetes.api.KubernetesHelper
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.client.KubernetesClientException
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable
+import io.fabric8.kubernetes.client.dsl.base.OperationSupport
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.HttpUrl
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import org.slf4j.Logger
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A small informer for Kubernetes resources. The resources are listed once and then kept up to date
+ * by a watch in a local, indexed store, so all reads are served from memory. Registered handlers are
+ * notified of every change and periodically get all cached resources again (resync).
+ *
+ * The watch is resumed from the last seen resource version whenever it ends and requests bookmarks to
+ * keep that version fresh. A watch that stays silent for too long is considered stalled and restarted.
+ * Only if the server no longer knows the resource version (410 Gone) the resources are listed again.
+ *
+ * Optional label and field selectors are applied by the server to both the list and the watch, so
+ * resources that do not match never reach the informer. Besides required label values, the label selector
+ * can exclude resources that carry a label at all. Lists are fetched in pages of limited size and each
+ * page is applied to the store as soon as it arrives.
+ *
+ * Responses are decoded by a [Codec], by default as JSON into the given type.
+ */
+open class ResourceInformer<T : HasMetadata>(type: Class<T>,
+                                             private val operation: FilterWatchListDeletable<*, *, *, *, *>,
+                                             private val httpClient: OkHttpClient,
+                                             private val scheduler: ScheduledExecutorService,
+                                             private val logger: Logger,
+                                             private val selector: Map<String, String> = emptyMap(),
+                                             private val absent: Set<String> = emptySet(),
+                                             private val fields: Map<String, String> = emptyMap(),
+                                             private val codec: Codec<T> = JsonCodec(type),
+                                             private val resyncPeriod: Long = DEFAULT_RESYNC_PERIOD) {
+
+    private val store = ConcurrentHashMap<String, T>()
+    private val indexers = ConcurrentHashMap<String, (T) -> String?>()
+    private val indices = ConcurrentHashMap<String, ConcurrentHashMap<String, MutableSet<String>>>()
+    private val handlers = CopyOnWriteArrayList<ResourceEventHandler<T>>()
+    private val filters = CopyOnWriteArrayList<(T, T) -> Boolean>()
+    private val kept = CopyOnWriteArrayList<(T) -> Boolean>()
+    private val dropped = AtomicLong()
+    private val lock = Any()
+
+    // the watch is a long running request, liveness is checked by us and not by a read timeout
+    private val watchClient = httpClient.newBuilder().readTimeout(0, TimeUnit.MILLISECONDS).build()
+    // the plural resource name like deployments, for logging
+    private val kind = HttpUrl.get((operation as OperationSupport).namespacedUrl)!!.pathSegments().last()
+
+    @Volatile private var resourceVersion: String? = null
+    @Volatile private var lastSeen = 0L
+    @Volatile private var call: Call? = null
+    @Volatile private var stopped = false
+    private var failures = 0
+
+    private var resync: ScheduledFuture<*>? = null
+    private var liveness: ScheduledFuture<*>? = null
+
+    /**
+     * Register a handler to be notified about changes of the cached resources.
+     */
+    open fun addEventHandler(handler: ResourceEventHandler<T>) {
+        handlers.add(handler)
+    }
+
+    /**
+     * Add a filter for updates. An update is only passed to the handlers if all filters accept it,
+     * otherwise the store is updated silently. Resyncs are not filtered.
+     */
+    open fun addUpdateFilter(filter: (previous: T, resource: T) -> Boolean) {
+        filters.add(filter)
+    }
+
+    /**
+     * Add a filter for the store. Resources that are not accepted are neither cached nor passed to the
+     * handlers, a cached resource that is no longer accepted is removed silently. Must be added before
+     * the informer is run.
+     */
+    open fun addStoreFilter(filter: (T) -> Boolean) {
+        kept.add(filter)
+    }
+
+    /**
+     * Get the number of updates that were not passed to the handlers because of a filter.
+     */
+    open fun dropped(): Long = dropped.get()
+
+    /**
+     * Add a named index. Each resource is stored under the key returned by the given function,
+     * resources mapped to null are not indexed.
+     */
+    open fun addIndexer(name: String, indexer: (T) -> String?) {
+        synchronized(lock) {
+            indexers[name] = indexer
+            indices[name] = ConcurrentHashMap()
+            store.forEach { key, resource -> index(name, indexer(resource), key) }
+        }
+    }
+
+    /**
+     * Fill the store with an initial list, start watching for changes and schedule the resync.
+     *
+     * @param enough checked after each page of the initial list, no more pages are fetched once it
+     * returns true. Resources that were not listed are added by the watch when they change.
+     */
+    open fun run(enough: () -> Boolean = { false }) {
+        relist(enough)
+        logger.info("Cached {} {}.", store.size, kind)
+
+        // does not work with GCE (No HTTP 101)
+        watch()
+
+        resync = scheduler.scheduleAtFixedRate({
+            try {
+                logger.debug("Dropped {} filtered {} updates so far.", dropped.get(), kind)
+                resync()
+            } catch (e: Exception) {
+                logger.error("Failed to resync {}.", kind, e)
+            }
+        }, resyncPeriod, resyncPeriod, TimeUnit.MILLISECONDS)
+
+        liveness = scheduler.scheduleWithFixedDelay({ checkLiveness() },
+                STALL_TIMEOUT / 4, STALL_TIMEOUT / 4, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * Stop watching and resyncing. The store keeps its current content.
+     */
+    open fun stop() {
+        stopped = true
+        resync?.cancel(false)
+        liveness?.cancel(false)
+        call?.cancel()
+    }
+
+    /**
+     * Notify all handlers about every cached resource again. This is served from memory only.
+     */
+    open fun resync() {
+        synchronized(lock) {
+            store.values.forEach { resource -> handlers.forEach { it.onUpdate(resource, resource) } }
+        }
+    }
+
+    /**
+     * Get a cached resource by name.
+     */
+    open operator fun get(name: String?): T? = if (name == null) null else store[name]
+
+    /**
+     * Get all cached resources.
+     */
+    open fun list(): List<T> = store.values.toList()
+
+    /**
+     * Get all cached resources stored under the given key of a named index.
+     */
+    open fun byIndex(name: String, key: String): List<T> {
+        return indices[name]?.get(key)?.mapNotNull { store[it] } ?: emptyList()
+    }
+
+    /**
+     * Replace a cached resource with the result of a write without notifying the handlers,
+     * so readers see it before the watch catches up. If the watch has already delivered a newer
+     * version, the cache keeps it.
+     *
+     * @param basedOn the resource version the write was based on
+     * @return true if the cached resource was replaced
+     */
+    open fun update(resource: T, basedOn: String?): Boolean {
+        synchronized(lock) {
+            if (store[KubernetesHelper.getName(resource)]?.metadata?.resourceVersion != basedOn) return false
+            put(resource)
+            return true
+        }
+    }
+
+    /**
+     * List all resources page by page and reconcile the store with the result. If the list is
+     * complete, resources missing from it are reported as deleted.
+     */
+    private fun relist(enough: () -> Boolean = { false }) {
+        val names = HashSet<String>()
+        var token: String? = null
+        while (true) {
+            val page = page(token)
+            if (page == null) {
+                logger.info("List of {} expired, listing again.", kind)
+                names.clear()
+                token = null
+                continue
+            }
+
+            synchronized(lock) {
+                page.items.forEach {
+                    names.add(KubernetesHelper.getName(it))
+                    added(it)
+                }
+            }
+
+            // all pages of a list share the resource version of the first one
+            resourceVersion = page.resourceVersion
+            token = page.token ?: break
+
+            if (enough()) {
+                logger.info("Stopped listing {} after {} items.", kind, names.size)
+                return
+            }
+        }
+
+        synchronized(lock) {
+            store.values.filter { !names.contains(KubernetesHelper.getName(it)) }.forEach { deleted(it) }
+        }
+    }
+
+    /**
+     * Get one page of the list.
+     *
+     * @return the page, or null if the continue token has expired
+     */
+    private fun page(token: String?): Page<T>? {
+        // fabric8 4.6 builds a broken URL for paged lists, so the request is built here
+        val url = HttpUrl.get((operation as OperationSupport).namespacedUrl)!!.newBuilder()
+                .addQueryParameter("limit", PAGE_SIZE.toString())
+        select(url)
+        if (token != null) {
+            url.addQueryParameter("continue", token)
+        }
+
+        val request = Request.Builder().get().url(url.build()).header("Accept", codec.mediaType).build()
+        httpClient.newCall(request).execute().use { response ->
+            if (response.code() == 410 && token != null) return null
+            if (!response.isSuccessful) {
+                throw KubernetesClientException("Failed to list $kind: ${response.message()}",
+                        response.code(), null)
+            }
+            return codec.page(response.body()!!)
+        }
+    }
+
+    /**
+     * Start a watch request from the last seen resource version. The response is a stream of
+     * watch events.
+     */
+    private fun watch() {
+        if (stopped) return
+
+        // fabric8 has no public API for the URL of an operation
+        val url = HttpUrl.get((operation as OperationSupport).namespacedUrl)!!.newBuilder()
+                .addQueryParameter("watch", "true")
+                .addQueryParameter("allowWatchBookmarks", "true")
+                .addQueryParameter("timeoutSeconds", WATCH_TIMEOUT.toString())
+        select(url)
+        if (resourceVersion != null) {
+            url.addQueryParameter("resourceVersion", resourceVersion)
+        }
+
+        lastSeen = System.currentTimeMillis()
+        val call = watchClient.newCall(Request.Builder().get().url(url.build()).header("Accept", codec.mediaType).build())
+        this.call = call
+        call.enqueue(object : Callback {
+            override fun onFailure(call: Call, e: IOException) {
+                if (!stopped) {
+                    logger.warn("Watch for {} failed: {}", kind, e.message)
+                    rewatch(false)
+                }
+            }
+
+            override fun onResponse(call: Call, response: Response) {
+                response.use {
+                    if (response.code() == 410) {
+                        rewatch(true)
+                    } else if (!response.isSuccessful) {
+                        logger.warn("Watch for {} failed with HTTP {}.", kind, response.code())
+                        rewatch(false)
+                    } else {
+                        stream(response)
+                    }
+                }
+            }
+        })
+    }
+
+    /**
+     * Read the watch events until the server ends the watch, then continue watching. A watch that is
+     * interrupted, e.g. by an event that cannot be decoded, is continued with a growing delay that is only
+     * reset by received events.
+     */
+    private fun stream(response: Response) {
+        val source = response.body()!!.source()
+        try {
+            while (true) {
+                val event = codec.next(source) ?: break
+                lastSeen = System.currentTimeMillis()
+                failures = 0
+                if (received(event)) {
+                    rewatch(true)
+                    return
+                }
+            }
+        } catch (e: IOException) {
+            if (!stopped) logger.info("Watch for {} interrupted: {}", kind, e.message)
+            rewatch(false)
+            return
+        }
+        watch()
+    }
+
+    /**
+     * Apply a single watch event to the store.
+     *
+     * @return true if the event reports that the resource version is gone
+     */
+    private fun received(event: WatchEvent<T>): Boolean {
+        when (event.type) {
+            "ADDED", "MODIFIED", "DELETED" -> {
+                val resource = event.resource ?: return false
+                synchronized(lock) {
+                    if (event.type == "DELETED") deleted(resource) else added(resource)
+                    resourceVersion = resource.metadata?.resourceVersion ?: resourceVersion
+                }
+            }
+
+            "BOOKMARK" -> {
+                resourceVersion = event.resourceVersion ?: resourceVersion
+            }
+
+            "ERROR" -> {
+                if (event.code == 410) return true
+                logger.warn("Received error for {} watch: {}", kind, event.message)
+            }
+        }
+        return false
+    }
+
+    /**
+     * Continue watching after a watch has failed, using a growing delay. If the resource version
+     * is gone, the resources are listed again first.
+     */
+    private fun rewatch(gone: Boolean) {
+        if (stopped) return
+
+        if (gone) {
+            logger.info("Resource version {} of {} is gone, listing again.", resourceVersion, kind)
+            scheduler.execute {
+                try {
+                    relist()
+                    watch()
+                } catch (e: Exception) {
+                    logger.error("Failed to list {}.", kind, e)
+                    rewatch(false)
+                }
+            }
+        } else {
+            val delay = Math.min(1000L shl Math.min(failures++, 5), 30000L)
+            scheduler.schedule({ watch() }, delay, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    private fun checkLiveness() {
+        val silent = System.currentTimeMillis() - lastSeen
+        if (!stopped && silent > STALL_TIMEOUT) {
+            logger.warn("Watch for {} silent for {} ms, restarting.", kind, silent)
+            lastSeen = System.currentTimeMillis()
+            call?.cancel()
+        }
+    }
+
+    private fun added(resource: T) {
+        if (!kept.all { it(resource) }) {
+            remove(resource)
+            return
+        }
+
+        val previous = put(resource)
+        if (previous == null) {
+            handlers.forEach { it.onAdd(resource) }
+        } else if (previous.metadata?.resourceVersion != resource.metadata?.resourceVersion) {
+            if (filters.all { it(previous, resource) }) {
+                handlers.forEach { it.onUpdate(previous, resource) }
+            } else {
+                dropped.incrementAndGet()
+            }
+        }
+    }
+
+    private fun deleted(resource: T) {
+        val previous = remove(resource) ?: return
+        handlers.forEach { it.onDelete(previous, false) }
+    }
+
+    private fun put(resource: T): T? {
+        val key = KubernetesHelper.getName(resource)
+        val previous = store.put(key, resource)
+        indexers.forEach { name, indexer ->
+            if (previous != null) unindex(name, indexer(previous), key)
+            index(name, indexer(resource), key)
+        }
+        return previous
+    }
+
+    private fun remove(resource: T): T? {
+        val key = KubernetesHelper.getName(resource)
+        val previous = store.remove(key)
+        if (previous != null) {
+            indexers.forEach { name, indexer -> unindex(name, indexer(previous), key) }
+        }
+        return previous
+    }
+
+    private fun index(name: String, value: String?, key: String) {
+        if (value != null) {
+            indices[name]!!.getOrPut(value) { ConcurrentHashMap.newKeySet() }.add(key)
+        }
+    }
+
+    private fun unindex(name: String, value: String?, key: String) {
+        if (value != null) {
+            indices[name]!![value]?.remove(key)
+        }
+    }
+
+    private fun select(url: HttpUrl.Builder) {
+        if (selector.isNotEmpty() || absent.isNotEmpty()) {
+            val labels = selector.entries.map { "${it.key}=${it.value}" } + absent.map { "!$it" }
+            url.addQueryParameter("labelSelector", labels.joinToString(","))
+        }
+        if (fields.isNotEmpty()) {
+            url.addQueryParameter("fieldSelector", fields.entries.joinToString(",") { "${it.key}=${it.value}" })
+        }
+    }
+
+    companion object {
+        /** Resync cached resources every 5 minutes by default. */
+        const val DEFAULT_RESYNC_PERIOD = 300000L
+
+        /** Number of resources fetched with each page of a list. */
+        const val PAGE_SIZE = 100
+
+        /** Let the server end each watch after 4 minutes, it is resumed right away. */
+        const val WATCH_TIMEOUT = 240L
+
+        /** A watch without any event or bookmark for 5 minutes is considered stalled. */
+        const val STALL_TIMEOUT = 300000L
+    }
+}
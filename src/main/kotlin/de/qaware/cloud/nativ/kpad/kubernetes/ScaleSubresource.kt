@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import io.fabric8.kubernetes.client.KubernetesClientException
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable
+import io.fabric8.kubernetes.client.dsl.base.OperationSupport
+import io.fabric8.kubernetes.client.utils.Serialization
+import okhttp3.HttpUrl
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.ResponseBody
+import org.slf4j.Logger
+
+/**
+ * Scales resources through their scale subresource with a single merge patch instead of reading and
+ * replacing the whole resource. The patch carries the expected resource version, so a concurrent change
+ * is answered with 409 Conflict. In that case the current version is read and the patch is retried.
+ * The Scale in the response is requested as protobuf if the server supports it.
+ */
+open class ScaleSubresource(private val operation: FilterWatchListDeletable<*, *, *, *, *>,
+                            private val httpClient: OkHttpClient,
+                            private val logger: Logger,
+                            private val protobuf: Boolean = false) {
+
+    private val mapper = Serialization.jsonMapper()
+
+    /**
+     * Scale the named resource to a number of given replicas.
+     *
+     * @param name the resource name
+     * @param resourceVersion the expected resource version, null to scale unconditionally
+     * @param replicas the number of replicas
+     * @return the resource version after scaling
+     */
+    open fun scale(name: String, resourceVersion: String?, replicas: Int): String? {
+        var version = resourceVersion
+
+        0.until(MAX_ATTEMPTS).forEach {
+            val patch = mapper.createObjectNode()
+            if (version != null) patch.putObject("metadata").put("resourceVersion", version)
+            patch.putObject("spec").put("replicas", replicas)
+
+            val request = request(name)
+                    .patch(RequestBody.create(MERGE_PATCH, mapper.writeValueAsString(patch)))
+                    .build()
+
+            httpClient.newCall(request).execute().use { response ->
+                if (response.isSuccessful) {
+                    return resourceVersion(response.body()!!)
+                } else if (response.code() != 409) {
+                    throw KubernetesClientException("Failed to scale $name: ${response.body()?.string()}", response.code(), null)
+                }
+            }
+
+            logger.info("Conflict while scaling {} from resource version {}. Retrying.", name, version)
+            version = current(name)
+        }
+
+        throw KubernetesClientException("Failed to scale $name after $MAX_ATTEMPTS conflicts.", 409, null)
+    }
+
+    private fun current(name: String): String? {
+        val request = request(name).get().build()
+        httpClient.newCall(request).execute().use { response ->
+            if (!response.isSuccessful) {
+                throw KubernetesClientException("Failed to get scale of $name: ${response.body()?.string()}", response.code(), null)
+            }
+            return resourceVersion(response.body()!!)
+        }
+    }
+
+    private fun request(name: String): Request.Builder {
+        val request = Request.Builder().url(url(name))
+        if (protobuf) request.header("Accept", "${ProtobufCodec.MEDIA_TYPE}, application/json")
+        return request
+    }
+
+    private fun resourceVersion(scale: ResponseBody): String? {
+        val type = scale.contentType()
+        if (type != null && "${type.type()}/${type.subtype()}" == ProtobufCodec.MEDIA_TYPE) {
+            return ProtobufCodec.resourceVersion(scale.bytes())
+        }
+        return mapper.readTree(scale.string()).path("metadata").path("resourceVersion").asText(null)
+    }
+
+    // fabric8 has no public API for the URL of an operation
+    private fun url(name: String): HttpUrl = HttpUrl.get((operation as OperationSupport).namespacedUrl)!!.newBuilder()
+            .addPathSegment(name)
+            .addPathSegment("scale")
+            .build()
+
+    companion object {
+        /** Give up scaling after 3 conflicting writes. */
+        const val MAX_ATTEMPTS = 3
+
+        private val MERGE_PATCH = MediaType.parse("application/merge-patch+json")
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import com.fasterxml.jackson.databind.JsonDeserializer
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.api.model.ObjectMeta
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder
+
+/**
+ * A lightweight view of a scalable resource like a Deployment or a DeploymentConfig. Only the fields
+ * used by the launchpad are decoded, everything else like the pod template, the annotations or the
+ * managed fields is skipped by the parser and never materialized. Of the status only the replica
+ * counts are kept to follow rollouts.
+ */
+@JsonDeserialize(using = JsonDeserializer.None::class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+class Workload : HasMetadata {
+
+    private var apiVersion: String? = null
+    private var kind: String? = null
+    private var metadata: ObjectMeta? = null
+
+    var spec = Spec()
+    var status = Status()
+
+    override fun getApiVersion() = apiVersion
+
+    override fun setApiVersion(apiVersion: String?) {
+        this.apiVersion = apiVersion
+    }
+
+    override fun getKind() = kind
+
+    fun setKind(kind: String?) {
+        this.kind = kind
+    }
+
+    override fun getMetadata() = metadata
+
+    @JsonDeserialize(using = MetadataDeserializer::class)
+    override fun setMetadata(metadata: ObjectMeta?) {
+        this.metadata = metadata
+    }
+
+    /**
+     * Get a copy of this workload after it has been scaled.
+     *
+     * @param resourceVersion the resource version returned by the scale request
+     * @param replicas the new number of replicas
+     */
+    fun scaled(resourceVersion: String?, replicas: Int): Workload {
+        val workload = Workload()
+        workload.apiVersion = apiVersion
+        workload.kind = kind
+        workload.metadata = ObjectMetaBuilder(metadata).withResourceVersion(resourceVersion).build()
+        workload.spec.replicas = replicas
+        workload.status = status
+        return workload
+    }
+
+    /**
+     * Check if the status reports all desired replicas as updated and ready, with no old replicas left.
+     *
+     * @param updates false for kinds without updated replicas in their status, like ReplicaSets
+     */
+    fun rolledOut(updates: Boolean = true): Boolean {
+        val replicas = spec.replicas ?: 0
+        return (status.observedGeneration ?: 0) >= (metadata?.generation ?: 0)
+                && (status.replicas ?: 0) == replicas
+                && (!updates || (status.updatedReplicas ?: 0) == replicas)
+                && (status.readyReplicas ?: 0) == replicas
+    }
+
+    /**
+     * Check if this workload is managed by a controller, like the ReplicaSets of a Deployment.
+     */
+    fun controlled(): Boolean = metadata?.ownerReferences?.any { it.controller == true } ?: false
+
+    /**
+     * Check if the other workload has the same spec and launchpad labels. Changes of the status or
+     * of any other metadata are not considered.
+     */
+    fun sameSpec(other: Workload): Boolean {
+        return metadata?.generation == other.metadata?.generation
+                && spec.replicas == other.spec.replicas
+                && launchpadLabels() == other.launchpadLabels()
+    }
+
+    private fun launchpadLabels() = metadata?.labels?.filterKeys { it.startsWith("LAUNCHPAD_") } ?: emptyMap()
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    class Spec {
+        var replicas: Int? = null
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    class Status {
+        var observedGeneration: Long? = null
+        var replicas: Int? = null
+        var updatedReplicas: Int? = null
+        var readyReplicas: Int? = null
+    }
+}
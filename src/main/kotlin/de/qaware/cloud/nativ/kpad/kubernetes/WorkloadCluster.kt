@@ -0,0 +1,404 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import de.qaware.cloud.nativ.kpad.Cluster
+import de.qaware.cloud.nativ.kpad.ClusterAppEvent
+import de.qaware.cloud.nativ.kpad.ClusterPodEvent
+import io.fabric8.kubernetes.api.KubernetesHelper
+import io.fabric8.kubernetes.api.model.HasMetadata
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler
+import okhttp3.OkHttpClient
+import org.slf4j.Logger
+import java.util.concurrent.ScheduledExecutorService
+import javax.annotation.PreDestroy
+import javax.enterprise.event.Event
+
+/**
+ * Shows scalable workloads like Deployments, StatefulSets or ReplicaSets on the launchpad. Every kind is
+ * cached by an informer of one shared [InformerFactory] and scaled through its scale subresource, the rows
+ * are assigned to the workloads of all kinds in one place.
+ *
+ * The pods of the shown workloads are watched by one more informer for the whole namespace and mapped
+ * to the rows by their owner, so each square shows the phase of a real pod. Warning events about
+ * the shown workloads or their pods are reported as failures of the row.
+ */
+abstract class WorkloadCluster(private val events: Event<ClusterAppEvent>,
+                               private val podEvents: Event<ClusterPodEvent>,
+                               private val logger: Logger) : Cluster {
+
+    private val rows = arrayOfNulls<Row>(8)
+    private val kinds = mutableListOf<Kind>()
+
+    private lateinit var httpClient: OkHttpClient
+    private lateinit var factory: InformerFactory
+    private var pods: ResourceInformer<PodState>? = null
+
+    /**
+     * Prepare the shared informer factory, must be called before any kind is added.
+     */
+    protected fun connect(httpClient: OkHttpClient, scheduler: ScheduledExecutorService) {
+        this.httpClient = httpClient
+        this.factory = InformerFactory(httpClient, scheduler, logger)
+    }
+
+    /**
+     * Show the launchpad enabled workloads of the given operation.
+     *
+     * @param name the name of the kind used for logging
+     * @param operation the operation of the workloads
+     * @param updates false for kinds without updated replicas in their status
+     * @param absent the labels of workloads that are not listed, e.g. of those managed by a controller
+     * @param codec the wire format of the workloads
+     */
+    protected fun add(name: String, operation: FilterWatchListDeletable<*, *, *, *, *>, updates: Boolean = true,
+                      absent: Set<String> = emptySet(), codec: Codec<Workload> = JsonCodec(Workload::class.java)) {
+        val informer = factory.informer(Workload::class.java, operation, LAUNCHPAD_SELECTOR, absent, codec = codec)
+        val scaler = ScaleSubresource(operation, httpClient, logger, codec is ProtobufCodec)
+        val kind = Kind(name, informer, scaler, updates)
+        informer.addIndexer(LAUNCHPAD_INDEX) { labels(it)["LAUNCHPAD_ENABLE"]?.toLowerCase() }
+        // status updates only matter while a rollout is followed
+        informer.addUpdateFilter { previous, workload -> !previous.sameSpec(workload) || rolling(kind, workload) }
+        informer.addEventHandler(kind)
+        kinds.add(kind)
+    }
+
+    /**
+     * Fill the rows from the informers and keep them up to date.
+     *
+     * @param pods the operation of the pods in the namespace
+     * @param coreEvents the operation of the core events in the namespace
+     */
+    protected fun start(pods: FilterWatchListDeletable<*, *, *, *, *>, coreEvents: FilterWatchListDeletable<*, *, *, *, *>) {
+        // stop the initial lists once all rows are filled
+        factory.run { synchronized(rows) { rows.all { it != null } } }
+
+        // the pods are listed completely, every square needs its pod
+        val informer = factory.informer(PodState::class.java, pods, LAUNCHPAD_SELECTOR)
+        informer.addIndexer(OWNER_INDEX) { it.owner() }
+        informer.addUpdateFilter { previous, pod -> previous.phase() != pod.phase() || previous.terminating() != pod.terminating() }
+        informer.addEventHandler(object : ResourceEventHandler<PodState> {
+            override fun onAdd(pod: PodState) = podChanged(pod)
+
+            override fun onUpdate(previous: PodState, pod: PodState) = podChanged(pod)
+
+            override fun onDelete(pod: PodState, deletedFinalStateUnknown: Boolean) = podChanged(pod)
+        })
+        this.pods = informer
+        informer.run()
+
+        synchronized(rows) {
+            rows.indices.forEach { phases(it) }
+        }
+
+        // only warnings reach the launchpad, old ones are listed without notifying the handler.
+        // Warnings about objects that are not shown are not cached at all, busy namespaces have many.
+        val warnings = factory.informer(EventState::class.java, coreEvents, fields = mapOf("type" to "Warning"))
+        warnings.addStoreFilter { indexOf(it) != -1 }
+        warnings.run()
+        warnings.addEventHandler(object : ResourceEventHandler<EventState> {
+            override fun onAdd(event: EventState) = warned(event)
+
+            override fun onUpdate(previous: EventState, event: EventState) {
+                // resyncs pass the unchanged cached events again, only repeated warnings are new
+                if (previous.metadata?.resourceVersion != event.metadata?.resourceVersion) {
+                    warned(event)
+                }
+            }
+
+            override fun onDelete(event: EventState, deletedFinalStateUnknown: Boolean) {
+            }
+        })
+    }
+
+    @PreDestroy
+    open fun shutdown() {
+        factory.stop()
+    }
+
+    override fun appExists(appIndex: Int) = rows.indices.contains(appIndex) && rows[appIndex] != null
+
+    override fun labels(appIndex: Int): Map<String, String> {
+        return labels(workload(appIndex))
+    }
+
+    private fun labels(workload: Workload?): Map<String, String> {
+        return KubernetesHelper.getLabels(workload)
+    }
+
+    override fun replicas(appIndex: Int): Int {
+        return workload(appIndex)?.spec?.replicas ?: -1
+    }
+
+    private fun workload(appIndex: Int): Workload? {
+        val row = rows.getOrNull(appIndex) ?: return null
+        return workload(row)
+    }
+
+    private fun indexOf(kind: Kind, name: String) = rows.indexOfFirst { it?.kind == kind && it.name == name }
+
+    private fun addWorkload(kind: Kind, workload: Workload) {
+        val name = KubernetesHelper.getName(workload)
+        var index = rows.indexOfFirst { it == null }
+
+        if (indexOf(kind, name) != -1) {
+            logger.info("{} with name {} already added. Ignored.", kind.name, name)
+            return
+        }
+
+        val labels = labels(workload)
+
+        // e.g. the ReplicaSets of a Deployment are shown through their Deployment
+        if (!"true".equals(labels["LAUNCHPAD_ENABLE"], true) || workload.controlled()) {
+            return
+        }
+
+        if (index == -1) {
+            logger.info("Found new {} {} but could not add because all rows are occupied.", kind.name, name)
+            return
+        }
+
+        if (labels.containsKey("LAUNCHPAD_ROW")) {
+            val row = labels["LAUNCHPAD_ROW"]!!.toInt()
+            if (rows.indices.contains(row) && rows[row] == null) {
+                index = row
+            }
+        }
+
+        rows[index] = Row(kind, name)
+        logger.info("Added {} {} at index {}.", kind.name, name, index)
+        events.fire(ClusterAppEvent(index, replicas(index), labels(workload), ClusterAppEvent.Type.ADDED))
+        phases(index)
+    }
+
+    private fun podChanged(pod: PodState) {
+        val owner = pod.owner() ?: return
+        synchronized(rows) {
+            val index = rows.indexOfFirst { it?.key == owner }
+            if (index != -1) phases(index)
+        }
+    }
+
+    private fun warned(event: EventState) {
+        val target = event.involvedObject
+        synchronized(rows) {
+            val index = indexOf(event)
+            if (index == -1) return
+
+            logger.warn("{} of {} {}: {}", event.reason, target.kind, target.name, event.message)
+            events.fire(ClusterAppEvent(index, replicas(index), labels(index), ClusterAppEvent.Type.FAILED))
+        }
+    }
+
+    /**
+     * Get the row of the object a warning is about. Names are reused, so the namespace and, where the
+     * object is cached, the uid must match too.
+     *
+     * @return the index of the row, or -1 if the object is not shown
+     */
+    private fun indexOf(event: EventState): Int {
+        val target = event.involvedObject
+        synchronized(rows) {
+            return when (target.kind) {
+                "Pod" -> {
+                    val pod = pods?.get(target.name)
+                    if (pod == null || !isTarget(pod, target)) -1 else rows.indexOfFirst { it != null && it.key == pod.owner() }
+                }
+                // the ReplicaSets of a Deployment are named after it, they are not cached
+                "ReplicaSet" -> rows.indexOfFirst {
+                    it != null && (it.key == "ReplicaSet/${target.name}" && isTarget(workload(it), target)
+                            || it.key == "Deployment/${target.name?.substringBeforeLast('-')}"
+                            && workload(it)?.metadata?.namespace == target.namespace)
+                }
+                else -> rows.indexOfFirst { it != null && it.key == "${target.kind}/${target.name}" && isTarget(workload(it), target) }
+            }
+        }
+    }
+
+    private fun workload(row: Row) = row.kind.informer[row.name]
+
+    private fun isTarget(resource: HasMetadata?, target: EventState.Reference) =
+            resource != null && resource.metadata?.namespace == target.namespace && resource.metadata?.uid == target.uid
+
+    /**
+     * Fire the phases of all pods of a row, the oldest pod is shown first.
+     */
+    private fun phases(index: Int) {
+        val row = rows[index] ?: return
+        val pods = this.pods ?: return
+        val phases = pods.byIndex(OWNER_INDEX, row.key)
+                .filter { !it.terminating() }
+                .sortedWith(compareBy({ it.metadata?.creationTimestamp }, { KubernetesHelper.getName(it) }))
+                .map { it.phase() }
+        podEvents.fire(ClusterPodEvent(index, phases))
+    }
+
+    /**
+     * Scale the workload to a number of given replicas.
+     *
+     * @param appIndex the workload index on the Launchpad
+     * @param replicas the number of replicas
+     */
+    override fun scale(appIndex: Int, replicas: Int) {
+        val row = rows.getOrNull(appIndex) ?: return
+        val workload = row.kind.informer[row.name] ?: return
+
+        logger.info("Scaling {} {} to {} replicas.", row.kind.name, row.name, replicas)
+
+        // the rollout is followed by the watch, the squares stay pending until the replicas are ready
+        synchronized(rows) {
+            row.rolling = true
+        }
+
+        val resourceVersion = try {
+            row.kind.scaler.scale(row.name, workload.metadata?.resourceVersion, replicas)
+        } catch (e: Exception) {
+            // nothing is rolling out, the row must not wait for the replicas
+            synchronized(rows) {
+                row.rolling = false
+            }
+            throw e
+        }
+        // a newer version from the watch has already been checked for the rollout
+        val scaled = workload.scaled(resourceVersion, replicas)
+        if (!row.kind.informer.update(scaled, workload.metadata?.resourceVersion)) return
+
+        synchronized(rows) {
+            if (rows[appIndex] === row && row.rolling && scaled.rolledOut(row.kind.updates)) {
+                rolledOut(appIndex, row, scaled)
+            }
+        }
+    }
+
+    /**
+     * Clears the rows and re-adds all launchpad enabled workloads from the local caches.
+     */
+    override fun reset() {
+        synchronized(rows) {
+            0.until(8).forEach { rows[it] = null }
+            kinds.forEach { kind -> kind.informer.byIndex(LAUNCHPAD_INDEX, "true").forEach { addWorkload(kind, it) } }
+        }
+    }
+
+    private fun rolling(kind: Kind, workload: Workload): Boolean {
+        synchronized(rows) {
+            val index = indexOf(kind, KubernetesHelper.getName(workload))
+            return index != -1 && rows[index]!!.rolling
+        }
+    }
+
+    private fun rolledOut(index: Int, row: Row, workload: Workload) {
+        logger.info("Rolled out {} {} with {} ready replicas.", row.kind.name, row.name, workload.spec.replicas)
+        row.rolling = false
+        events.fire(ClusterAppEvent(index, workload.spec.replicas ?: 0, labels(workload), ClusterAppEvent.Type.DEPLOYED))
+    }
+
+    private fun onAdd(kind: Kind, workload: Workload) {
+        synchronized(rows) {
+            addWorkload(kind, workload)
+        }
+    }
+
+    private fun onUpdate(kind: Kind, previous: Workload, workload: Workload) {
+        synchronized(rows) {
+            val name = KubernetesHelper.getName(workload)
+            val index = indexOf(kind, name)
+            if (index == -1) {
+                // not shown yet, maybe it has been enabled or a row became available
+                addWorkload(kind, workload)
+                return
+            }
+
+            // now check if the number of replicas has changed
+            val oldReplicas = previous.spec.replicas ?: 0
+            val newReplicas = workload.spec.replicas ?: 0
+
+            if (oldReplicas < newReplicas) {
+                logger.info("Scaled up {} {} from {} to {} replicas", kind.name, name, oldReplicas, newReplicas)
+                events.fire(ClusterAppEvent(index, newReplicas, labels(workload), ClusterAppEvent.Type.SCALED_UP))
+            } else if (oldReplicas > newReplicas) {
+                logger.info("Scaled down {} {} from {} to {} replicas", kind.name, name, oldReplicas, newReplicas)
+                events.fire(ClusterAppEvent(index, newReplicas, labels(workload), ClusterAppEvent.Type.SCALED_DOWN))
+            }
+
+            val row = rows[index]!!
+            if (row.rolling) {
+                if (workload.rolledOut(kind.updates)) {
+                    rolledOut(index, row, workload)
+                } else if (workload.status.readyReplicas != previous.status.readyReplicas) {
+                    // squares turn solid one by one as the replicas become ready
+                    events.fire(ClusterAppEvent(index, workload.status.readyReplicas ?: 0, labels(workload), ClusterAppEvent.Type.DEPLOYED))
+                }
+            }
+        }
+    }
+
+    private fun onDelete(kind: Kind, workload: Workload) {
+        synchronized(rows) {
+            val name = KubernetesHelper.getName(workload)
+            val index = indexOf(kind, name)
+            if (index == -1) return
+
+            logger.info("Deleted {} {}.", kind.name, name)
+            rows[index] = null
+
+            events.fire(ClusterAppEvent(index, 0, labels(workload), ClusterAppEvent.Type.DELETED))
+        }
+    }
+
+    /**
+     * One kind of workload with its informer and scaler.
+     */
+    private inner class Kind(val name: String,
+                             val informer: ResourceInformer<Workload>,
+                             val scaler: ScaleSubresource,
+                             val updates: Boolean) : ResourceEventHandler<Workload> {
+
+        override fun onAdd(workload: Workload) = onAdd(this, workload)
+
+        override fun onUpdate(previous: Workload, workload: Workload) = onUpdate(this, previous, workload)
+
+        override fun onDelete(workload: Workload, deletedFinalStateUnknown: Boolean) = onDelete(this, workload)
+    }
+
+    /**
+     * A row of the launchpad showing a workload.
+     */
+    private class Row(val kind: Kind, val name: String) {
+        val key = "${kind.name}/$name"
+        var rolling = false
+    }
+
+    companion object {
+        /** Only launchpad enabled workloads are listed and watched. */
+        val LAUNCHPAD_SELECTOR = mapOf("LAUNCHPAD_ENABLE" to "true")
+
+        /** Index of the cached workloads by their LAUNCHPAD_ENABLE label. */
+        const val LAUNCHPAD_INDEX = "launchpad"
+
+        /** Index of the cached pods by their owning workload, see [PodState.owner]. */
+        const val OWNER_INDEX = "owner"
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.launchpad
+
+import javax.sound.midi.MidiMessage
+import javax.sound.midi.ShortMessage
+import javax.sound.midi.SysexMessage
+
+/**
+ * The shadow of the LEDs on the 9x9 surface of the Launchpad MK2. The changes are collected until the
+ * next frame, which contains only the LEDs that differ from what the Launchpad shows. The colors of a
+ * frame are a single SysEx message, either to set several LEDs or to set all LEDs to one color. LEDs
+ * that start blinking or pulsing follow as short messages.
+ */
+class FrameBuffer {
+
+    /**
+     * Blinking and pulsing are sent on their own MIDI channel.
+     */
+    enum class Effect(val channel: Int) { BLINK(1), PULSE(2) }
+
+    // the color is null if it is not known
+    private data class State(val color: Int?, val effect: Effect? = null, val effectColor: Int = 0)
+
+    private val shown = arrayOfNulls<State>(SIZE)
+    private val next = arrayOfNulls<State>(SIZE)
+    private var cleared = false
+    private var dirty = false
+
+    /**
+     * Set the color of an LED in the next frame.
+     *
+     * @param id the ID of the LED
+     * @param color the color value, 0 is off
+     * @return true if this is the first change of the next frame
+     */
+    @Synchronized
+    fun set(id: Int, color: Int): Boolean = change(id, State(color))
+
+    /**
+     * Let an LED blink or pulse in the next frame. It blinks between its color and the given color.
+     *
+     * @return true if this is the first change of the next frame
+     */
+    @Synchronized
+    fun effect(id: Int, effect: Effect, color: Int): Boolean =
+            change(id, State(next[id]?.color ?: shown[id]?.color, effect, color))
+
+    /**
+     * Turn all LEDs off with the next frame, regardless of what the Launchpad shows.
+     *
+     * @return true if this is the first change of the next frame
+     */
+    @Synchronized
+    fun clear(): Boolean {
+        IDS.forEach { next[it] = null }
+        cleared = true
+        return changed()
+    }
+
+    /**
+     * Take the changes of the next frame.
+     *
+     * @return the messages of the changed LEDs, empty if nothing changed
+     */
+    @Synchronized
+    fun frame(): List<MidiMessage> {
+        if (!dirty) return emptyList()
+        dirty = false
+
+        val messages = ArrayList<MidiMessage>()
+        if (cleared) {
+            cleared = false
+            IDS.forEach { shown[it] = OFF }
+            messages.add(all(0))
+        }
+
+        // a new color stops blinking and pulsing
+        val colored = IDS.filter { id ->
+            val state = next[id]
+            if (state?.color == null) false
+            else state.color != shown[id]?.color || (state.effect == null && shown[id]?.effect != null)
+        }
+        colored.forEach { shown[it] = State(next[it]!!.color) }
+        val color = next[IDS[0]]
+        if (colored.size > 1 && IDS.all { next[it] == color && color?.effect == null }) {
+            messages.add(all(color!!.color!!))
+        } else if (colored.isNotEmpty()) {
+            messages.add(leds(colored))
+        }
+
+        IDS.filter { id -> next[id]?.let { it.effect != null && it != shown[id] } ?: false }.forEach { id ->
+            val state = next[id]!!
+            shown[id] = state
+            messages.add(ShortMessage(command(id) + state.effect!!.channel, state.effect.channel, id, state.effectColor))
+        }
+        return messages
+    }
+
+    private fun change(id: Int, state: State): Boolean {
+        next[id] = state
+        return changed()
+    }
+
+    private fun changed(): Boolean {
+        val first = !dirty
+        dirty = true
+        return first
+    }
+
+    private fun leds(ids: List<Int>): SysexMessage {
+        val data = ByteArray(PREAMBLE.size + 2 + 2 * ids.size)
+        System.arraycopy(PREAMBLE, 0, data, 0, PREAMBLE.size)
+        data[PREAMBLE.size] = SET_LEDS
+        ids.forEachIndexed { i, id ->
+            data[PREAMBLE.size + 1 + 2 * i] = id.toByte()
+            data[PREAMBLE.size + 2 + 2 * i] = next[id]!!.color!!.toByte()
+        }
+        data[data.size - 1] = END
+        return SysexMessage(data, data.size)
+    }
+
+    private fun all(color: Int): SysexMessage {
+        val data = PREAMBLE + byteArrayOf(SET_ALL, color.toByte(), END)
+        return SysexMessage(data, data.size)
+    }
+
+    /**
+     * The top buttons are controllers, all other LEDs are notes.
+     */
+    private fun command(id: Int) = if (id >= 104) ShortMessage.CONTROL_CHANGE else ShortMessage.NOTE_ON
+
+    companion object {
+        /** The IDs of the squares, the right buttons and the top buttons. */
+        val IDS = (11..89).filter { it % 10 != 0 } + (104..111)
+
+        private const val SIZE = 112
+        private val OFF = State(0)
+
+        private val PREAMBLE = byteArrayOf(240.toByte(), 0, 32, 41, 2, 24)
+        private const val SET_LEDS: Byte = 10
+        private const val SET_ALL: Byte = 14
+        private const val END = 247.toByte()
+    }
+}
@@ -284,6 +284,21 @@ open class LaunchpadController @Inject constructor(private val grid: ClusterNode
         light(Switch.OFF, square)
     }
 
+    /**
+     * A node in the grid has failed. Update Launchpad MK2.
+     *
+     * @param event the node event data
+     */
+    open fun failed(@Observes @ClusterNodeEvent.Failed event: ClusterNodeEvent) {
+        if(event.column == 8) {
+            blink(Button.right(event.row), RED)
+            return
+        }
+
+        val square = Square(event.row, event.column)
+        blink(square, RED)
+    }
+
     /**
      * Initialize the action buttons (top row).
      */
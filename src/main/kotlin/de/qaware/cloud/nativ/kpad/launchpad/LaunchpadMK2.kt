@@ -37,7 +37,9 @@ import javax.inject.Inject
 import javax.sound.midi.*
 
 /**
- * This class models the main interaction with the Novation Launchpad MK2 midi device.
+ * This class models the main interaction with the Novation Launchpad MK2 midi device. The lights are
+ * collected in a [FrameBuffer] and written once per frame by a [MidiWriter]. Lights changed while a
+ * button is handled are written first.
  */
 @ApplicationScoped
 open class LaunchpadMK2 @Inject constructor(private val transmitter: Transmitter,
@@ -45,11 +47,18 @@ open class LaunchpadMK2 @Inject constructor(private val transmitter: Transmitter
                                             private val event: Event<SwitchableEvent>,
                                             private val logger: Logger) {
 
+    private val frame = FrameBuffer()
+    private val writer = MidiWriter(receiver, logger)
+
+    // true while a button is handled, the lights it changes are direct feedback
+    private val feedback = ThreadLocal.withInitial { false }
+
     /**
      * Register with the Launchpad to receive MIDI messages.
      */
     @PostConstruct
     open fun postConstruct() {
+        writer.start()
         transmitter.receiver = object : Receiver {
             override fun send(message: MidiMessage, timeStamp: Long) {
                 if (message is ShortMessage) handle(message)
@@ -70,36 +79,58 @@ open class LaunchpadMK2 @Inject constructor(private val transmitter: Transmitter
             else -> Square.from(message.data1)
         }
 
-        when (message.data2) {
-            127 -> event.select(object : AnnotationLiteral<SwitchableEvent.Pressed>() {}).fire(SwitchableEvent(switchable))
-            else -> event.select(object : AnnotationLiteral<SwitchableEvent.Released>() {}).fire(SwitchableEvent(switchable))
+        feedback.set(true)
+        try {
+            when (message.data2) {
+                127 -> event.select(object : AnnotationLiteral<SwitchableEvent.Pressed>() {}).fire(SwitchableEvent(switchable))
+                else -> event.select(object : AnnotationLiteral<SwitchableEvent.Released>() {}).fire(SwitchableEvent(switchable))
+            }
+        } finally {
+            feedback.set(false)
         }
     }
 
     /**
-     * Switch the light on or off for a given event.
+     * Switch the light on or off for a given event. The light is sent with the next frame.
      */
     open fun light(@Observes @LaunchpadEvent.Light event: LaunchpadEvent) {
-        when (event.switch) {
-            ON -> event.switchable?.on(receiver, event.color)
-            else -> event.switchable?.off(receiver)
-        }
+        val switchable = event.switchable ?: return
+        render(frame.set(switchable.id, if (event.switch == ON) event.color.value else 0))
     }
 
     /**
      * Pulse the switchable for a given event.
      */
     open fun pulse(@Observes @LaunchpadEvent.Pulse event: LaunchpadEvent) {
-        event.switchable?.pulse(receiver, event.color)
+        val switchable = event.switchable ?: return
+        render(frame.effect(switchable.id, FrameBuffer.Effect.PULSE, event.color.value))
     }
 
     /**
      * Blink the switchable for a given event.
      */
     open fun blink(@Observes @LaunchpadEvent.Blink event: LaunchpadEvent) {
-        event.switchable?.blink(receiver, event.color)
+        val switchable = event.switchable ?: return
+        render(frame.effect(switchable.id, FrameBuffer.Effect.BLINK, event.color.value))
     }
 
+    /**
+     * Queue the next frame. Feedback is written as soon as possible, other changes wait for the rest of
+     * the frame.
+     */
+    private fun render(first: Boolean) {
+        if (feedback.get()) {
+            writer.send(MidiWriter.Lane.FEEDBACK, frame) { frame.frame() }
+        } else if (first) {
+            writer.send(MidiWriter.Lane.BULK, frame, FRAME_PERIOD) { frame.frame() }
+        }
+    }
+
+    /**
+     * @return the metrics of writing to the Launchpad
+     */
+    open fun metrics(): MidiWriter.Metrics = writer.metrics()
+
     /**
      * Write the given text event as a SysexMessage to the LaunchpadMK2. Due to a bug in the
      * MacOSX JVM, this function will only work on Windows for now.
@@ -115,21 +146,27 @@ open class LaunchpadMK2 @Inject constructor(private val transmitter: Transmitter
         data.addAll(text!!.toList())
         data.add(247.toByte())
 
-        receiver.send(SysexMessage(data.toByteArray(), data.size), -1)
+        val message = SysexMessage(data.toByteArray(), data.size)
+        writer.send(MidiWriter.Lane.BULK) { listOf(message) }
     }
 
     /**
-     * Reset the Launchpad and turn off all the buttons.
+     * Reset the Launchpad and turn off all the buttons with one message. Waits until it is written.
      */
-    @PreDestroy
     open fun reset(@Observes @LaunchpadEvent.Reset event: LaunchpadEvent) {
-        Button.values().forEach { it.off(receiver) }
+        frame.clear()
+        writer.send(MidiWriter.Lane.FEEDBACK, frame) { frame.frame() }
+        writer.flush(RESET_TIMEOUT)
+    }
 
-        IntRange(0, 7).forEach { r ->
-            IntRange(0, 7).forEach { c ->
-                Square(r, c).off(receiver)
-            }
-        }
+    /**
+     * Turn off all the buttons and stop writing.
+     */
+    @PreDestroy
+    open fun destroy() {
+        reset(LaunchpadEvent.reset())
+        writer.close()
+        logger.info("Launchpad writer: {}", writer.metrics())
     }
 
     /**
@@ -139,37 +176,6 @@ open class LaunchpadMK2 @Inject constructor(private val transmitter: Transmitter
         val command: Int
         val id: Int
         val row: Int
-
-        /**
-         * Turn button on by setting the color to specified value.
-         *
-         * @param receiver the MIDI receiver
-         * @param color the color value
-         */
-        fun on(receiver: Receiver, color: Color) = receiver.send(ShortMessage(command, 0, id, color.value), -1)
-
-        /**
-         * Start blinking between the current color and the given color.
-         *
-         * @param receiver the MIDI receiver
-         * @param color the color value
-         */
-        fun blink(receiver: Receiver, color: Color) = receiver.send(ShortMessage(command + 1, 1, id, color.value), -1)
-
-        /**
-         * Start pulsing at the given color.
-         *
-         * @param receiver the MIDI receiver
-         * @param color the color value
-         */
-        fun pulse(receiver: Receiver, color: Color) = receiver.send(ShortMessage(command + 2, 2, id, color.value), -1)
-
-        /**
-         * Turn this color off, by setting color to zero.
-         *
-         * @param receiver the MIDI receiver
-         */
-        fun off(receiver: Receiver) = receiver.send(ShortMessage(command, 0, id, 0), -1)
     }
 
     /**
@@ -275,4 +281,12 @@ open class LaunchpadMK2 @Inject constructor(private val transmitter: Transmitter
         BLUE(45),
         PURPLE(53)
     }
+
+    companion object {
+        /** Send the changed lights 50 times per second. */
+        const val FRAME_PERIOD = 20L
+
+        /** Wait up to one second for a reset to be written. */
+        const val RESET_TIMEOUT = 1000L
+    }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.launchpad
+
+import org.slf4j.Logger
+import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import javax.sound.midi.MidiMessage
+import javax.sound.midi.Receiver
+import kotlin.concurrent.withLock
+
+/**
+ * Writes the MIDI messages for the Launchpad on a single thread, so slow USB writes do not stall the
+ * threads that change the lights. The messages wait in two bounded lanes, the feedback lane is always
+ * written before the bulk lane. A message with the key of a queued one supersedes it. The messages of
+ * an entry are created when it is written, so they contain the latest state.
+ *
+ * @param capacity the number of entries per lane
+ */
+class MidiWriter(private val receiver: Receiver,
+                 private val logger: Logger,
+                 private val capacity: Int = CAPACITY) {
+
+    /**
+     * The lanes in the order they are written.
+     */
+    enum class Lane { FEEDBACK, BULK }
+
+    /**
+     * @param depth the number of queued entries
+     * @param maxDepth the most entries that were queued at the same time
+     * @param written the number of written messages
+     * @param dropped the number of entries that were superseded or did not fit into their lane
+     * @param averageLatency the average time to write a message in microseconds
+     * @param maxLatency the longest time to write a message in microseconds
+     */
+    data class Metrics(val depth: Int, val maxDepth: Int, val written: Long, val dropped: Long,
+                       val averageLatency: Long, val maxLatency: Long)
+
+    private class Entry(val key: Any?, var lane: Lane, var notBefore: Long, var messages: () -> List<MidiMessage>)
+
+    private val lock = ReentrantLock()
+    private val changed = lock.newCondition()
+    private val lanes = Lane.values().map { ArrayDeque<Entry>() }
+    private val keys = HashMap<Any, Entry>()
+    private var writing = false
+    private var closed = false
+
+    private var maxDepth = 0
+    private var written = 0L
+    private var dropped = 0L
+    private var latency = 0L
+    private var maxLatency = 0L
+
+    private val thread = Thread({ run() }, "midi-writer")
+
+    /**
+     * Start the writer thread.
+     */
+    fun start() {
+        thread.isDaemon = true
+        thread.start()
+    }
+
+    /**
+     * Queue messages to be written. If the bulk lane is full, the caller waits up to [BACKPRESSURE]
+     * milliseconds for the writer, then the oldest entry of the lane is dropped.
+     *
+     * @param lane the lane of the messages
+     * @param key the key of the messages, they supersede queued messages with the same key
+     * @param delay the milliseconds to wait for more changes before the messages are written
+     * @param messages creates the messages when they are written
+     */
+    fun send(lane: Lane, key: Any? = null, delay: Long = 0, messages: () -> List<MidiMessage>) {
+        lock.lock()
+        try {
+            if (closed) return
+            val queue = lanes[lane.ordinal]
+
+            if (lane == Lane.BULK && queue.size >= capacity && (key == null || !keys.containsKey(key))) {
+                var nanos = TimeUnit.MILLISECONDS.toNanos(BACKPRESSURE)
+                while (queue.size >= capacity && nanos > 0 && !closed) nanos = changed.awaitNanos(nanos)
+            }
+
+            val queued = key?.let { keys[it] }
+            if (queued != null) {
+                queued.messages = messages
+                dropped++
+                if (lane < queued.lane) { // move to the lane with the higher priority
+                    lanes[queued.lane.ordinal].remove(queued)
+                    queued.lane = lane
+                    queued.notBefore = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay)
+                    queue.addLast(queued)
+                }
+            } else {
+                if (queue.size >= capacity) {
+                    val oldest = queue.removeFirst()
+                    oldest.key?.let { keys.remove(it) }
+                    dropped++
+                    logger.debug("Dropped MIDI messages, the {} lane is full.", lane)
+                }
+                val entry = Entry(key, lane, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay), messages)
+                queue.addLast(entry)
+                key?.let { keys[it] = entry }
+                maxDepth = Math.max(maxDepth, depth())
+            }
+            changed.signalAll()
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    /**
+     * Wait until all queued messages are written.
+     *
+     * @param timeout the milliseconds to wait at most
+     */
+    fun flush(timeout: Long) {
+        lock.withLock {
+            var nanos = TimeUnit.MILLISECONDS.toNanos(timeout)
+            while ((depth() > 0 || writing) && nanos > 0 && thread.isAlive) nanos = changed.awaitNanos(nanos)
+        }
+    }
+
+    /**
+     * Write the queued messages without their delay and stop the writer thread.
+     */
+    fun close() {
+        lock.withLock {
+            closed = true
+            changed.signalAll()
+        }
+        thread.join(TimeUnit.SECONDS.toMillis(1))
+    }
+
+    fun metrics(): Metrics = lock.withLock {
+        Metrics(depth(), maxDepth, written, dropped,
+                if (written == 0L) 0 else TimeUnit.NANOSECONDS.toMicros(latency / written),
+                TimeUnit.NANOSECONDS.toMicros(maxLatency))
+    }
+
+    private fun depth() = lanes.sumBy { it.size }
+
+    private fun run() {
+        while (true) {
+            val entry = take() ?: return
+            try {
+                entry.messages().forEach { write(it) }
+            } catch (e: Exception) {
+                logger.error("Could not create MIDI messages.", e)
+            }
+            lock.withLock {
+                writing = false
+                changed.signalAll()
+            }
+        }
+    }
+
+    /**
+     * @return the next entry to write, or null if the writer is closed and all entries are written
+     */
+    private fun take(): Entry? {
+        lock.lock()
+        try {
+            while (true) {
+                val next = lanes.asSequence().mapNotNull { it.peekFirst() }.firstOrNull()
+                if (next == null) {
+                    if (closed) return null
+                    changed.await()
+                    continue
+                }
+
+                val wait = next.notBefore - System.nanoTime()
+                if (wait > 0 && !closed) {
+                    changed.awaitNanos(wait)
+                    continue
+                }
+
+                lanes[next.lane.ordinal].removeFirst()
+                next.key?.let { keys.remove(it) }
+                writing = true
+                changed.signalAll()
+                return next
+            }
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    private fun write(message: MidiMessage) {
+        val start = System.nanoTime()
+        try {
+            receiver.send(message, -1)
+        } catch (e: Exception) {
+            logger.error("Could not write MIDI message.", e)
+        }
+        val nanos = System.nanoTime() - start
+        lock.withLock {
+            written++
+            latency += nanos
+            maxLatency = Math.max(maxLatency, nanos)
+        }
+    }
+
+    companion object {
+        /** Queue up to 64 entries per lane. */
+        const val CAPACITY = 64
+
+        /** Wait up to 100 milliseconds for space in the bulk lane. */
+        const val BACKPRESSURE = 100L
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import de.qaware.cloud.nativ.kpad.marathon.MarathonClient.App
+
+/**
+ * The difference between two snapshots of the Marathon apps, computed in one pass over the current
+ * apps. Apps are matched by id. An app with the same version and deployments as before is unchanged
+ * and the previous instance is kept in [apps], so unchanged apps can be recognized by identity.
+ *
+ * @param apps the current apps by id in the order of the snapshot
+ * @param added the apps that were not in the previous snapshot
+ * @param removed the apps that are not in the current snapshot any more
+ * @param changed the current instances of the apps that have changed
+ */
+class AppDiff private constructor(val apps: LinkedHashMap<String, App>,
+                                  val added: List<App>,
+                                  val removed: List<App>,
+                                  val changed: List<App>) {
+
+    companion object {
+        /**
+         * Compare the current snapshot with the previous one.
+         */
+        fun of(previous: Map<String, App>, current: List<App>): AppDiff {
+            val apps = LinkedHashMap<String, App>(current.size * 4 / 3 + 1)
+            val added = ArrayList<App>()
+            val changed = ArrayList<App>()
+
+            current.forEach { app ->
+                val old = previous[app.id]
+                if (old == null) {
+                    added.add(app)
+                    apps[app.id] = app
+                } else if (same(old, app)) {
+                    apps[app.id] = old
+                } else {
+                    changed.add(app)
+                    apps[app.id] = app
+                }
+            }
+
+            // only look for removed apps if some of the previous ones are missing
+            val removed = if (apps.size - added.size == previous.size) emptyList() else
+                previous.values.filter { !apps.containsKey(it.id) }
+
+            return AppDiff(apps, added, removed, changed)
+        }
+
+        /**
+         * Marathon assigns a new version to every change of the app definition, including scaling.
+         * The deployments are not part of the definition and are compared as well.
+         */
+        fun same(old: App, new: App): Boolean {
+            if (old.version == null || new.version == null) return old == new
+            return old.version == new.version && old.deployments == new.deployments
+        }
+    }
+}
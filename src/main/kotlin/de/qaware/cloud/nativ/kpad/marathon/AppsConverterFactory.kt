@@ -0,0 +1,158 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import de.qaware.cloud.nativ.kpad.marathon.MarathonClient.App
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+
+/**
+ * Decodes the app responses of Marathon while they are read. Only the fields of [App] are decoded, all
+ * other subtrees like container specs, health checks and environments are skipped without creating
+ * objects for them. The apps embedded in the groups are decoded the same way. Other types are left to
+ * the next converter.
+ */
+class AppsConverterFactory : Converter.Factory() {
+
+    override fun responseBodyConverter(type: Type, annotations: Array<out Annotation>,
+                                       retrofit: Retrofit): Converter<ResponseBody, *>? = when (type) {
+        MarathonClient.Apps::class.java -> Converter<ResponseBody, MarathonClient.Apps> { body ->
+            read(body) { reader -> MarathonClient.Apps(field(reader, "apps") { apps(it) } ?: emptyList()) }
+        }
+        MarathonClient.AppResult::class.java -> Converter<ResponseBody, MarathonClient.AppResult> { body ->
+            read(body) { reader -> MarathonClient.AppResult(field(reader, "app") { app(it) }!!) }
+        }
+        MarathonClient.Group::class.java -> Converter<ResponseBody, MarathonClient.Group> { body ->
+            read(body) { reader -> group(reader) }
+        }
+        else -> null
+    }
+
+    companion object {
+        private inline fun <T> read(body: ResponseBody, decode: (JsonReader) -> T): T {
+            body.use { return JsonReader(it.charStream()).use(decode) }
+        }
+
+        /**
+         * Decode one field of an object and skip all others.
+         */
+        private fun <T> field(reader: JsonReader, name: String, decode: (JsonReader) -> T): T? {
+            var value: T? = null
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.nextName() == name && reader.peek() != JsonToken.NULL) {
+                    value = decode(reader)
+                } else {
+                    reader.skipValue()
+                }
+            }
+            reader.endObject()
+            return value
+        }
+
+        fun apps(reader: JsonReader): List<App> {
+            val apps = ArrayList<App>()
+            reader.beginArray()
+            while (reader.hasNext()) apps.add(app(reader))
+            reader.endArray()
+            return apps
+        }
+
+        fun app(reader: JsonReader): App {
+            var id = ""
+            var instances = 0
+            var deployments = emptyList<MarathonClient.Deployment>()
+            var labels = emptyMap<String, String>()
+            var version: String? = null
+
+            reader.beginObject()
+            while (reader.hasNext()) {
+                val name = reader.nextName()
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue()
+                    continue
+                }
+                when (name) {
+                    "id" -> id = reader.nextString()
+                    "instances" -> instances = reader.nextInt()
+                    "deployments" -> deployments = deployments(reader)
+                    "labels" -> labels = labels(reader)
+                    "version" -> version = reader.nextString()
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+            return App(id, instances, deployments, labels, version)
+        }
+
+        fun group(reader: JsonReader): MarathonClient.Group {
+            var id = ""
+            var apps = emptyList<App>()
+            val groups = ArrayList<MarathonClient.Group>()
+
+            reader.beginObject()
+            while (reader.hasNext()) {
+                val name = reader.nextName()
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue()
+                    continue
+                }
+                when (name) {
+                    "id" -> id = reader.nextString()
+                    "apps" -> apps = apps(reader)
+                    "groups" -> {
+                        reader.beginArray()
+                        while (reader.hasNext()) groups.add(group(reader))
+                        reader.endArray()
+                    }
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+            return MarathonClient.Group(id, apps, groups)
+        }
+
+        private fun deployments(reader: JsonReader): List<MarathonClient.Deployment> {
+            val deployments = ArrayList<MarathonClient.Deployment>(1)
+            reader.beginArray()
+            while (reader.hasNext()) {
+                field(reader, "id") { it.nextString() }?.let { deployments.add(MarathonClient.Deployment(it, null, null)) }
+            }
+            reader.endArray()
+            return deployments
+        }
+
+        private fun labels(reader: JsonReader): Map<String, String> {
+            val labels = LinkedHashMap<String, String>()
+            reader.beginObject()
+            while (reader.hasNext()) labels[reader.nextName()] = reader.nextString()
+            reader.endObject()
+            return labels
+        }
+    }
+}
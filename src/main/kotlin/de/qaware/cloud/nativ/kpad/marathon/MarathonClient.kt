@@ -37,37 +37,53 @@ interface MarathonClient {
     @GET("v2/apps?label=LAUNCHPAD_ENABLE==true")
     fun listApps(): Call<Apps>
 
+    @GET("v2/apps/{app_id}")
+    fun getApp(@Path("app_id") appId: String): Call<AppResult>
+
     @PUT("v2/apps/{app_id}")
     fun updateApp(@Path("app_id") appId: String, @Body app: Any, @Query("force") force: Boolean): Call<UpdateResult>
 
+    @PUT("v2/apps")
+    fun updateApps(@Body apps: List<AppUpdate>, @Query("force") force: Boolean): Call<UpdateResult>
+
     @GET("v2/apps/{app_id}/tasks")
     fun listTasksOfApp(@Path("app_id") appId: String): Call<Tasks>
 
     @GET("v2/groups")
-    fun listGroups(): Call<Groups>
+    fun listGroups(): Call<Group>
+
+    // group ids are nested paths like shop/backend, the slashes must not be encoded
+    @PUT("v2/groups/{group_id}")
+    fun updateGroup(@Path("group_id", encoded = true) groupId: String, @Body update: GroupUpdate, @Query("force") force: Boolean): Call<UpdateResult>
 
     @GET("v2/tasks")
-    fun listTasks(@Query("status") status: String = ""): Call<Tasks>
+    fun listTasks(@Query("status") status: String? = null): Call<Tasks>
 
     @GET("v2/deployments")
     fun listDeployments(): Call<List<Deployment>>
 
     data class App(val id: String, val instances: Int,
-                   val deployments: List<Deployment>, val labels: Map<String, String>)
+                   val deployments: List<Deployment>, val labels: Map<String, String>,
+                   val version: String? = null)
 
     data class Apps(val apps: List<App>)
 
-    data class Group(val id: String)
+    data class AppResult(val app: App)
 
-    data class Groups(val groups: List<Group>)
+    data class Group(val id: String, val apps: List<App>, val groups: List<Group>)
+
+    data class GroupUpdate(val scaleBy: Double)
 
     data class ScalingUpdate(val instances: Int)
 
+    data class AppUpdate(val id: String, val instances: Int)
+
     data class UpdateResult(val deploymentId: String)
 
     data class Tasks(val tasks: List<Task>)
 
-    data class Task(val id: String, val appId: String, val stagedAt: Date, val startedAt: Date)
+    data class Task(val id: String, val appId: String, val stagedAt: Date, val startedAt: Date?,
+                    val state: String? = null)
 
     data class Deployment(val id: String, val affectedApps: List<String>?, val currentActions: List<Action>?)
 
@@ -24,61 +24,394 @@
 package de.qaware.cloud.nativ.kpad.marathon
 
 import de.qaware.cloud.nativ.kpad.Cluster
+import de.qaware.cloud.nativ.kpad.AdaptivePoller
 import de.qaware.cloud.nativ.kpad.ClusterAppEvent
+import de.qaware.cloud.nativ.kpad.ClusterNode
+import de.qaware.cloud.nativ.kpad.ClusterPodEvent
+import de.qaware.cloud.nativ.kpad.SerialExecutor
+import org.apache.deltaspike.core.api.config.ConfigProperty
 import org.apache.deltaspike.core.api.exclude.Exclude
 import org.slf4j.Logger
+import retrofit2.Response
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
 import java.util.concurrent.ScheduledExecutorService
-import java.util.concurrent.TimeUnit
+import java.util.function.BiConsumer
+import java.util.function.BiFunction
+import java.util.function.Consumer
 import javax.annotation.PostConstruct
+import javax.annotation.PreDestroy
 import javax.enterprise.context.ApplicationScoped
 import javax.enterprise.event.Event
 import javax.inject.Inject
 import javax.inject.Named
 
 /**
- * The DC/OS Marathon specific cluster implementation.
+ * The DC/OS Marathon specific cluster implementation. The apps are either polled, or changed apps are
+ * fetched when the Marathon event stream reports them. With the event stream the apps are still polled
+ * now and then to reconcile missed events. Without it they are polled every second while an app is
+ * deploying and less and less often while the cluster is idle. The apps of the configured groups are
+ * shown in one row per group and scaled together.
  */
 @Exclude(onExpression = "cluster.service!=marathon")
 @ApplicationScoped
 open class MarathonCluster @Inject constructor(private val client: MarathonClient,
+                                               private val marathonEvents: MarathonEvents,
+                                               @ConfigProperty(name = "marathon.events", defaultValue = "false")
+                                               private val eventStream: String,
+                                               @ConfigProperty(name = "marathon.groups", defaultValue = "")
+                                               marathonGroups: String,
                                                @Named("scheduled")
                                                private val scheduler: ScheduledExecutorService,
                                                private val events: Event<ClusterAppEvent>,
+                                               private val podEvents: Event<ClusterPodEvent>,
                                                private val logger: Logger) : Cluster {
 
     private val apps = Array<MarathonClient.App?>(8, { _ -> null })
     private val deploying = Array<Boolean>(8, { _ -> false })
 
+    // the ids of the deployments each row waits for, only changed on the serial executor
+    private val pending = Array(8, { _ -> HashSet<String>() })
+
+    // the rows scaled by a request that Marathon has not listed yet, only changed on the serial executor
+    private val scaling = Array(8, { _ -> false })
+
+    // the last phases of the tasks of each row
+    private val phases = Array(8, { _ -> emptyList<ClusterNode.Phase>() })
+
+    // the ids of the groups shown as one row each
+    private val groupIds = marathonGroups.split(',').map { it.trim().trimEnd('/') }.filter { it.isNotEmpty() }
+            .map { if (it.startsWith("/")) it else "/$it" }
+
+    // the apps of each group row, replaced on every update
+    @Volatile private var members = emptyMap<String, List<MarathonClient.App>>()
+
+    // the last listed apps, changed apps are compared with it
+    private var snapshot = LinkedHashMap<String, MarathonClient.App>()
+
+    // the tasks are listed for events and more events arrived meanwhile, only changed on the serial executor
+    private var listingTasks = false
+    private var tasksChanged = false
+
+    // polling and events change the apps one after another
+    private val serial = SerialExecutor(scheduler)
+    private var stream: MarathonEventStream? = null
+    private lateinit var poller: AdaptivePoller
+
     @PostConstruct
     open fun init() {
-        watch()
+        if (eventStream.toBoolean()) {
+            subscribe()
+            watch(RECONCILE_PERIOD, RECONCILE_PERIOD)
+        } else {
+            watch(MIN_POLL_PERIOD, MAX_POLL_PERIOD)
+        }
+    }
+
+    @PreDestroy
+    open fun destroy() {
+        stream?.close()
+        poller.stop()
+    }
+
+    /**
+     * @return the current interval of polling the apps in milliseconds
+     */
+    open fun pollInterval(): Long = poller.interval
+
+    /**
+     * List the apps and the groups and apply the changes on the serial executor.
+     *
+     * @return completed when the changes are applied
+     */
+    private fun update(): CompletableFuture<Void> {
+        val groups: CompletableFuture<Response<MarathonClient.Group>?> = if (groupIds.isEmpty())
+            CompletableFuture.completedFuture(null) else client.listGroups().future().thenApply { it }
+
+        return client.listApps().future().thenCombine(groups, BiFunction { apps: Response<MarathonClient.Apps>, root: Response<MarathonClient.Group>? -> Pair(apps, root) })
+                .thenAcceptAsync(Consumer { (apps, root) ->
+                    if (!apps.isSuccessful) {
+                        logger.error("Error while updating apps: {}", apps.errorBody().string())
+                    } else if (root != null && !root.isSuccessful) {
+                        logger.error("Error while listing groups: {}", root.errorBody().string())
+                    } else {
+                        apply(rows(apps.body().apps, root?.body()))
+                    }
+                }, serial).thenCompose { tasks() }.thenCompose { resolve() }
+    }
+
+    /**
+     * Replace the apps of the configured groups by one app per group. It has the id of the group, the
+     * most instances of its apps and their deployments.
+     */
+    private fun rows(appList: List<MarathonClient.App>, root: MarathonClient.Group?): List<MarathonClient.App> {
+        if (root == null) return appList
+
+        val rows = appList.filterTo(ArrayList()) { app -> groupIds.none { member(app.id, it) } }
+        val members = HashMap<String, List<MarathonClient.App>>()
+        groupIds.forEach { groupId ->
+            val group = find(root, groupId)
+            if (group == null) {
+                logger.debug("Group {} not found.", groupId)
+                return@forEach
+            }
+            val apps = apps(group)
+            members[groupId] = apps
+            rows.add(MarathonClient.App(groupId, apps.map { it.instances }.max() ?: 0,
+                    apps.flatMap { it.deployments }.distinctBy { it.id }, apps.firstOrNull()?.labels ?: emptyMap()))
+        }
+        this.members = members
+        return rows
+    }
+
+    private fun find(group: MarathonClient.Group, groupId: String): MarathonClient.Group? {
+        if (group.id == groupId) return group
+        return group.groups.asSequence().mapNotNull { find(it, groupId) }.firstOrNull()
     }
 
-    private fun update() {
-        val response = client.listApps().execute()
+    private fun apps(group: MarathonClient.Group): List<MarathonClient.App> = group.apps + group.groups.flatMap { apps(it) }
+
+    private fun member(appId: String, groupId: String) = appId.startsWith("$groupId/")
+
+    private fun isGroup(appIndex: Int) = groupIds.contains(apps[appIndex]?.id)
+
+    private fun shown(appId: String) = apps.any { it != null && (it.id == appId || (groupIds.contains(it.id) && member(appId, it.id))) }
+
+    /**
+     * List the tasks of all apps once per update and apply them to the rows.
+     *
+     * @return completed when the tasks are applied
+     */
+    private fun tasks(): CompletableFuture<Void> {
+        if (apps.all { it == null }) return CompletableFuture.completedFuture(null)
 
-        if (!response.isSuccessful) {
-            logger.error("Error while updating apps: {}", response.errorBody().string())
+        return client.listTasks().future().thenAcceptAsync(Consumer { response ->
+            if (response.isSuccessful) {
+                tasks(response.body().tasks.groupBy { it.appId })
+            } else {
+                logger.error("Error while listing tasks: {}", response.errorBody().string())
+            }
+        }, serial)
+    }
+
+    /**
+     * List the tasks for events that changed tasks of the shown apps. Events arriving meanwhile are
+     * handled by one more listing, so a burst of events costs at most two requests.
+     */
+    private fun tasksChanged() {
+        if (listingTasks) {
+            tasksChanged = true
             return
         }
+        listingTasks = true
+        tasks().whenCompleteAsync(BiConsumer { _, e ->
+            if (e != null) logger.error("Failed to list tasks!", e)
+            listingTasks = false
+            if (tasksChanged) {
+                tasksChanged = false
+                tasksChanged()
+            }
+        }, serial)
+    }
+
+    private fun tasks(index: Map<String, List<MarathonClient.Task>>) {
+        apps.forEachIndexed { appIndex, app ->
+            if (app == null)
+                return@forEachIndexed
+
+            val tasks = members[app.id]?.flatMap { index[it.id] ?: emptyList() } ?: index[app.id] ?: emptyList()
+
+            // without a known deployment the end of deploying is guessed from the tasks
+            if (deploying[appIndex] && (app.deployments.count() == 0) && pending[appIndex].isEmpty()) {
+                if (tasks.any { staging(it) }) {
+                    logger.info("App {} finished deploying, but still has staging tasks", app.id)
+                } else {
+                    depolyingFinished(appIndex, app, app)
+                }
+            }
+
+            val phases = tasks.sortedBy { it.stagedAt }.map { phase(it) }
+            if (phases != this.phases[appIndex]) {
+                this.phases[appIndex] = phases
+                podEvents.fire(ClusterPodEvent(appIndex, phases))
+            }
+        }
+    }
+
+    private fun staging(task: MarathonClient.Task): Boolean = when (task.state) {
+        null -> task.startedAt == null
+        else -> task.state == "TASK_STAGING" || task.state == "TASK_STARTING"
+    }
+
+    private fun phase(task: MarathonClient.Task): ClusterNode.Phase = when (task.state) {
+        null -> if (task.startedAt == null) ClusterNode.Phase.Pending else ClusterNode.Phase.Running
+        "TASK_STAGING", "TASK_STARTING" -> ClusterNode.Phase.Pending
+        "TASK_RUNNING" -> ClusterNode.Phase.Running
+        "TASK_FINISHED", "TASK_KILLING", "TASK_KILLED" -> ClusterNode.Phase.Succeeded
+        "TASK_FAILED", "TASK_ERROR", "TASK_LOST", "TASK_DROPPED", "TASK_GONE" -> ClusterNode.Phase.Failed
+        else -> ClusterNode.Phase.Unknown
+    }
+
+    /**
+     * Look up the pending deployments. The deployments that Marathon does not list any more have finished.
+     *
+     * @return completed when the finished deployments are applied
+     */
+    private fun resolve(): CompletableFuture<Void> {
+        if (pending.all { ids -> ids.all { it == REQUESTED } }) return CompletableFuture.completedFuture(null)
+
+        return client.listDeployments().future().thenAcceptAsync(Consumer { response ->
+            if (response.isSuccessful) {
+                val active = response.body().mapTo(HashSet()) { it.id }
+                val finished = pending.flatMap { ids -> ids.filter { it != REQUESTED && !active.contains(it) } }
+                finished.forEach { finished(it, false) }
+            } else {
+                logger.error("Error while listing deployments: {}", response.errorBody().string())
+            }
+        }, serial)
+    }
+
+    /**
+     * A deployment has finished. Rows that do not wait for other deployments are deployed.
+     */
+    private fun finished(deploymentId: String, failed: Boolean) {
+        pending.forEachIndexed { appIndex, ids ->
+            val app = apps[appIndex]
+            if (!ids.remove(deploymentId) || app == null) return@forEachIndexed
+
+            if (failed) {
+                logger.warn("Deployment {} of app {} failed.", deploymentId, app.id)
+                events.fire(ClusterAppEvent(appIndex, app.instances, labels(appIndex), ClusterAppEvent.Type.FAILED))
+            }
+            if (ids.isEmpty() && deploying[appIndex]) {
+                depolyingFinished(appIndex, app, app)
+            }
+        }
+    }
+
+    /**
+     * Show the requested instances of the app at the given row until Marathon lists the change.
+     */
+    private fun requesting(appIndex: Int, appId: String, replicas: Int) {
+        val app = apps[appIndex]
+        if (app?.id != appId) return
+
+        apps[appIndex] = app.copy(instances = replicas)
+        deploying[appIndex] = true
+        scaling[appIndex] = true
+        pending[appIndex].add(REQUESTED)
+    }
+
+    /**
+     * Wait for the deployment started by a scale request of the app at the given row. If the request
+     * failed, the next listing shows the actual instances again.
+     */
+    private fun requested(appIndex: Int, appId: String, result: Response<MarathonClient.UpdateResult>?) {
+        serial.execute {
+            pending[appIndex].remove(REQUESTED)
+            if (apps[appIndex]?.id == appId && result != null && result.isSuccessful) {
+                pending[appIndex].add(result.body().deploymentId)
+            } else if (apps[appIndex]?.id == appId) {
+                scaling[appIndex] = false
+            }
+        }
+    }
 
-        val newApps = response.body().apps.toMutableList()
+    private fun apply(appList: List<MarathonClient.App>) {
+        val previous = snapshot
+        val diff = AppDiff.of(previous, appList)
+        snapshot = diff.apps
+        logger.debug("Listed {} apps, {} added, {} changed, {} removed.",
+                appList.size, diff.added.size, diff.changed.size, diff.removed.size)
 
         apps.forEachIndexed { appIndex, app ->
             if (app == null)
                 return@forEachIndexed
 
-            val newApp = newApps.find { it.id.equals(app.id) }
-            if (newApp != null) { // app found in newApps
-                newApps.remove(newApp)
-                apps[appIndex] = newApp
-                findChanges(appIndex, app, newApp)
-            } else { // app not found in newApps -> deleted
+            val newApp = snapshot[app.id]
+            if (newApp == null) { // app not found in newApps -> deleted
                 deleted(appIndex, app)
+            } else {
+                listed(appIndex, app, newApp, newApp === previous[app.id])
+            }
+        }
+
+        if (diff.added.isNotEmpty() || diff.removed.isNotEmpty()) fill()
+    }
+
+    /**
+     * Apply the listed app to its row.
+     *
+     * @param unchanged true if the app is unchanged since the last listing
+     */
+    private fun listed(appIndex: Int, app: MarathonClient.App, newApp: MarathonClient.App, unchanged: Boolean) {
+        if (scaling[appIndex] && unchanged) { // listed before Marathon applied the requested scale
+            return
+        } else if (newApp !== app) { // changed since the last update
+            scaling[appIndex] = false
+            apps[appIndex] = newApp
+            findChanges(appIndex, app, newApp)
+        } else if (deploying[appIndex]) { // unchanged, but may have finished staging
+            findChanges(appIndex, app, newApp)
+        }
+    }
+
+    /**
+     * Show the apps without a row in the free rows.
+     */
+    private fun fill() {
+        if (apps.all { it != null }) return
+
+        val shown = apps.mapNotNullTo(HashSet()) { it?.id }
+        for (app in snapshot.values) {
+            if (shown.contains(app.id)) continue
+            if (apps.all { it != null }) {
+                logger.info("Found {} apps but could not add all because all rows are occupied!", snapshot.size)
+                return
             }
+            addApp(app)
+        }
+    }
+
+    /**
+     * Fetch the given apps only and apply their changes on the serial executor.
+     */
+    private fun refresh(appIds: Set<String>) {
+        appIds.forEach { appId ->
+            client.getApp(appId).future().thenAcceptAsync(Consumer { refreshed(appId, it) }, serial)
+                    .exceptionally { e -> logger.error("Failed to update app {}!", appId, e); null }
+        }
+    }
+
+    private fun refreshed(appId: String, response: Response<MarathonClient.AppResult>) {
+        val index = apps.indexOfFirst { it?.id == appId }
+
+        if (response.code() == 404 || (response.isSuccessful && !enabled(response.body().app))) {
+            removed(appId)
+        } else if (!response.isSuccessful) {
+            logger.error("Error while updating app {}: {}", appId, response.errorBody().string())
+        } else {
+            // an unchanged app keeps its previous instance, like in a listing
+            val previous = snapshot[appId]
+            val unchanged = previous != null && AppDiff.same(previous, response.body().app)
+            val newApp = if (unchanged) previous!! else response.body().app
+            snapshot[appId] = newApp
+            if (index == -1) addApp(newApp) else listed(index, apps[index]!!, newApp, unchanged)
         }
+    }
 
-        newApps.forEach { addApp(it) }
+    private fun enabled(app: MarathonClient.App) = app.labels["LAUNCHPAD_ENABLE"] == "true"
+
+    /**
+     * An app has been deleted or is not launchpad enabled any more.
+     */
+    private fun removed(appId: String) {
+        snapshot.remove(appId)
+        val index = apps.indexOfFirst { it?.id == appId }
+        if (index != -1) {
+            deleted(index, apps[index]!!)
+            fill()
+        }
     }
 
     private fun addApp(newApp: MarathonClient.App) {
@@ -98,37 +431,23 @@ open class MarathonCluster @Inject constructor(private val client: MarathonClien
 
         apps[index] = newApp
         deploying[index] = false
+        scaling[index] = false
+        pending[index].clear()
+        phases[index] = emptyList()
         logger.info("Added app {} at index {}.", newApp.id, index)
         events.fire(ClusterAppEvent(index, newApp.instances, labels(index), ClusterAppEvent.Type.ADDED))
     }
 
     private fun findChanges(appIndex: Int, oldApp: MarathonClient.App, newApp: MarathonClient.App) {
-        if (deploying[appIndex] && (newApp.deployments.count() == 0)) { // -> depolying finished
-            if (isStaging(newApp)) {
-                logger.info("App {} finished deploying, but still has staging tasks", newApp.id)
-            } else {
-                depolyingFinished(appIndex, oldApp, newApp)
-            }
-        }
-
         if (oldApp.instances < newApp.instances) { // -> scaled up
             scaledUp(appIndex, oldApp, newApp)
         } else if (oldApp.instances > newApp.instances) { // -> scaled down
             scaledDown(appIndex, oldApp, newApp)
         }
-    }
 
-    private fun isStaging(app: MarathonClient.App): Boolean {
-        val response = client.listTasks("staging").execute()
-
-        if (!response.isSuccessful) {
-            logger.error("Error while updating apps: {}", response.errorBody().string())
-            return false
+        if (deploying[appIndex]) {
+            newApp.deployments.forEach { pending[appIndex].add(it.id) }
         }
-
-        val tasks = response.body().tasks
-        logger.info("Staging tasks: " + tasks.toString())
-        return tasks.any { it.appId.equals(app.id) }
     }
 
     private fun depolyingFinished(appIndex: Int, app: MarathonClient.App, newApp: MarathonClient.App) {
@@ -152,6 +471,8 @@ open class MarathonCluster @Inject constructor(private val client: MarathonClien
     private fun deleted(appIndex: Int, app: MarathonClient.App) {
         logger.info("Deleted app {}.", app.id)
         apps[appIndex] = null
+        scaling[appIndex] = false
+        pending[appIndex].clear()
         events.fire(ClusterAppEvent(appIndex, 0, labels(appIndex), ClusterAppEvent.Type.DELETED))
     }
 
@@ -166,17 +487,86 @@ open class MarathonCluster @Inject constructor(private val client: MarathonClien
             return
         }
 
-        logger.info("Scaling app {} to {} replicas.", app.id, replicas)
-        val result = client.updateApp(app.id, MarathonClient.ScalingUpdate(replicas), true).execute()
+        // the rows scale concurrently, the result is only logged
+        request(appIndex, app, replicas)
+        poller.wake()
+    }
 
-        apps[appIndex] = app.copy(instances = replicas)
-        deploying[appIndex] = true
+    /**
+     * Scale the app or the group at the given row.
+     *
+     * @return completed with the success of the request
+     */
+    private fun request(appIndex: Int, app: MarathonClient.App, replicas: Int): CompletableFuture<Boolean> {
+        logger.info("Scaling {} {} to {} replicas.", if (isGroup(appIndex)) "group" else "app", app.id, replicas)
+        val call = if (isGroup(appIndex)) scaleGroup(app, replicas) else client.updateApp(app.id, MarathonClient.ScalingUpdate(replicas), true)
+        serial.execute { requesting(appIndex, app.id, replicas) }
+
+        return call.future().handle { result, e ->
+            requested(appIndex, app.id, result)
+            if (e != null) {
+                logger.error("Scaling {} failed!", app.id, e)
+            } else if (result.isSuccessful) {
+                logger.debug("Scaling successful.")
+            } else {
+                logger.error("Scaling failed. ERROR: {}", result.errorBody().string())
+            }
+            e == null && result.isSuccessful
+        }
+    }
 
-        if (result.isSuccessful) {
-            logger.debug("Scaling successful.")
-        } else {
-            logger.error("Scaling failed. ERROR: {}", result.errorBody().string())
+    /**
+     * Scale all apps of a group with one deployment. A group without instances can not be scaled by a
+     * factor, its apps are set to the replicas instead.
+     */
+    private fun scaleGroup(group: MarathonClient.App, replicas: Int): retrofit2.Call<MarathonClient.UpdateResult> {
+        if (group.instances > 0) {
+            return client.updateGroup(group.id.trimStart('/'), MarathonClient.GroupUpdate(replicas.toDouble() / group.instances), true)
+        }
+        val updates = members[group.id].orEmpty().map { MarathonClient.AppUpdate(it.id, replicas) }
+        return client.updateApps(updates, true)
+    }
+
+    /**
+     * Scale all apps with one request, so Marathon plans a single deployment for them. The update of
+     * several apps is atomic, either all of them are scaled or none. Each group row is scaled with its
+     * own request.
+     */
+    override val bulkScale = true
+
+    override fun scaleAll(replicas: Map<Int, Int>): CompletionStage<Map<Int, Boolean>> {
+        val groups = replicas.filterKeys { appExists(it) && isGroup(it) }
+                .mapValues { request(it.key, apps[it.key]!!, it.value) }
+        val results = scaleApps(replicas.filterKeys { !groups.containsKey(it) })
+        poller.wake()
+
+        return CompletableFuture.allOf(*groups.values.toTypedArray()).thenCombine(results, BiFunction { _, scaled: Map<Int, Boolean> ->
+            replicas.mapValues { groups[it.key]?.join() ?: scaled[it.key] ?: false }
+        })
+    }
+
+    private fun scaleApps(replicas: Map<Int, Int>): CompletableFuture<Map<Int, Boolean>> {
+        val scaled = replicas.filterKeys { appExists(it) }
+        val appIds = scaled.mapValues { apps[it.key]!!.id }
+        val updates = scaled.map { MarathonClient.AppUpdate(appIds[it.key]!!, it.value) }
+        if (updates.isEmpty()) return CompletableFuture.completedFuture(replicas.mapValues { false })
+
+        logger.info("Scaling apps {}.", updates)
+        serial.execute { scaled.forEach { index, count -> requesting(index, appIds[index]!!, count) } }
+
+        val results = client.updateApps(updates, true).future().handle { result, e ->
+            appIds.forEach { index, appId -> requested(index, appId, result) }
+            if (e != null) {
+                logger.error("Scaling apps failed!", e)
+            } else if (result.isSuccessful) {
+                logger.debug("Scaling successful, deployment {}.", result.body().deploymentId)
+            } else {
+                logger.error("Scaling failed. ERROR: {}", result.errorBody().string())
+            }
+            val success = e == null && result.isSuccessful
+            replicas.mapValues { success && scaled.containsKey(it.key) }
         }
+        return results
     }
 
     override fun labels(appIndex: Int): Map<String, String> {
@@ -184,20 +574,88 @@ open class MarathonCluster @Inject constructor(private val client: MarathonClien
     }
 
     override fun reset() {
-        0.until(8).forEach {
-            apps[it] = null
-            deploying[it] = false
+        serial.execute {
+            0.until(8).forEach {
+                apps[it] = null
+                deploying[it] = false
+                scaling[it] = false
+                pending[it].clear()
+            }
+            snapshot = LinkedHashMap()
+            members = emptyMap()
+            // the rows are filled by the next update, it must not wait for the backed off interval
+            poller.runNow()
         }
     }
 
-    private fun watch() {
-        scheduler.scheduleAtFixedRate({
-            try {
-                update()
-            } catch (e: Exception) {
-                logger.error("Failed to update data!")
-                e.printStackTrace()
+    private fun watch(minPeriod: Long, maxPeriod: Long) {
+        poller = AdaptivePoller(scheduler, serial, minPeriod, maxPeriod, { deploying.any { it } }) { reconcile() }
+        poller.start()
+    }
+
+    private fun reconcile(): CompletableFuture<Void> {
+        return update().exceptionally { e ->
+            logger.error("Failed to update data!", e)
+            null
+        }
+    }
+
+    private fun subscribe() {
+        val stream = MarathonEventStream(marathonEvents, scheduler, logger)
+        this.stream = stream
+        stream.open(connected = { reconcile() }) { event ->
+            val deploymentId = event.plan?.id
+            if (deploymentId != null && event.eventType == "deployment_success") {
+                serial.execute { finished(deploymentId, false) }
+            } else if (deploymentId != null && event.eventType == "deployment_failed") {
+                serial.execute { finished(deploymentId, true) }
+            }
+            serial.execute { changed(event) }
+        }
+    }
+
+    /**
+     * Fetch the apps changed by an event. The events report all apps, so only the listed or shown apps
+     * are fetched, the others are not launchpad enabled. An app posted to the API is added or removed
+     * by the labels of its definition. Changed tasks of the shown apps are listed at once, so the squares
+     * do not wait for the next reconcile.
+     */
+    private fun changed(event: MarathonEvents.Event) {
+        if (TASK_EVENTS.contains(event.eventType)) {
+            if (event.apps().any { shown(it) }) tasksChanged()
+            return
+        }
+
+        // the apps of the groups are only listed with their groups
+        val appIds = event.apps().filterTo(HashSet()) { appId -> groupIds.none { member(appId, it) } }
+        if (appIds.size < event.apps().size) poller.runNow()
+
+        val known = appIds.filterTo(HashSet()) { appId -> snapshot.containsKey(appId) || apps.any { it?.id == appId } }
+        val definition = event.appDefinition
+        if (event.eventType == "api_post_event" && definition?.id != null && appIds.contains(definition.id)) {
+            if (definition.labels?.get("LAUNCHPAD_ENABLE") == "true") {
+                known.add(definition.id)
+            } else if (known.remove(definition.id)) {
+                removed(definition.id)
             }
-        }, 0, 2500, TimeUnit.MILLISECONDS)
+        }
+        refresh(known)
+    }
+
+    companion object {
+        /** Poll the apps every second while an app is deploying. */
+        const val MIN_POLL_PERIOD = 1000L
+
+        /** Poll an idle cluster at least every 30 seconds. */
+        const val MAX_POLL_PERIOD = 30000L
+
+        /** Poll the apps every 30 seconds to reconcile missed events. */
+        const val RECONCILE_PERIOD = 30000L
+
+        /** The events that only change the tasks of an app. */
+        private val TASK_EVENTS = setOf("status_update_event", "instance_changed_event")
+
+        /** Stands for the deployment of a scale request that has not been answered yet. */
+        private const val REQUESTED = ""
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import okhttp3.ResponseBody
+import org.slf4j.Logger
+import retrofit2.Call
+import retrofit2.Callback
+import retrofit2.Response
+import java.io.IOException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Subscribes to the Marathon event bus and reports the events that change apps. The stream is opened
+ * again after a short delay whenever it fails or the server ends it. Events sent while the stream is
+ * closed are lost, so the connected callback is invoked to reconcile the state each time it is open.
+ */
+open class MarathonEventStream(private val events: MarathonEvents,
+                               private val scheduler: ScheduledExecutorService,
+                               private val logger: Logger) {
+
+    private val gson = Gson()
+
+    @Volatile
+    private var stopped = false
+    private var call: Call<ResponseBody>? = null
+
+    /**
+     * Open the stream.
+     *
+     * @param connected invoked each time the stream is open
+     * @param listener invoked with each event on the thread reading the stream
+     */
+    open fun open(connected: () -> Unit, listener: (MarathonEvents.Event) -> Unit) {
+        if (stopped) return
+
+        val call = events.events(EVENT_TYPES)
+        this.call = call
+        call.enqueue(object : Callback<ResponseBody> {
+            override fun onResponse(call: Call<ResponseBody>, response: Response<ResponseBody>) {
+                if (!response.isSuccessful) {
+                    logger.warn("Marathon event stream failed with HTTP {}.", response.code())
+                    response.errorBody()?.close()
+                } else {
+                    logger.info("Subscribed to Marathon events.")
+                    connected()
+                    response.body().use { read(it, listener) }
+                }
+                reopen(connected, listener)
+            }
+
+            override fun onFailure(call: Call<ResponseBody>, t: Throwable) {
+                if (!stopped) logger.warn("Marathon event stream failed: {}", t.message)
+                reopen(connected, listener)
+            }
+        })
+    }
+
+    /**
+     * Close the stream for good.
+     */
+    open fun close() {
+        stopped = true
+        call?.cancel()
+    }
+
+    /**
+     * Read the server-sent events until the stream ends. An event is a block of lines ended by an
+     * empty line, its JSON payload is in the data lines.
+     */
+    private fun read(body: ResponseBody, listener: (MarathonEvents.Event) -> Unit) {
+        val source = body.source()
+        val data = StringBuilder()
+        try {
+            while (true) {
+                val line = source.readUtf8Line() ?: return
+                if (line.startsWith("data:")) {
+                    data.append(line.substring(5).trim())
+                } else if (line.isEmpty() && data.isNotEmpty()) {
+                    received(data.toString(), listener)
+                    data.setLength(0)
+                }
+            }
+        } catch (e: IOException) {
+            if (!stopped) logger.info("Marathon event stream interrupted: {}", e.message)
+        }
+    }
+
+    private fun received(data: String, listener: (MarathonEvents.Event) -> Unit) {
+        try {
+            val event = gson.fromJson(data, MarathonEvents.Event::class.java)
+            logger.debug("Received Marathon event {} for {}.", event.eventType, event.apps())
+            listener(event)
+        } catch (e: JsonParseException) {
+            logger.warn("Ignoring malformed Marathon event: {}", e.message)
+        }
+    }
+
+    private fun reopen(connected: () -> Unit, listener: (MarathonEvents.Event) -> Unit) {
+        if (!stopped) scheduler.schedule({ open(connected, listener) }, REOPEN_DELAY, TimeUnit.MILLISECONDS)
+    }
+
+    companion object {
+        /** Open the stream again 5 seconds after it was closed. */
+        const val REOPEN_DELAY = 5000L
+
+        /** The events that start, progress or finish changes of apps. */
+        val EVENT_TYPES = listOf("api_post_event", "deployment_info", "deployment_success",
+                "deployment_failed", "status_update_event", "instance_changed_event")
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import okhttp3.ResponseBody
+import retrofit2.Call
+import retrofit2.http.GET
+import retrofit2.http.Headers
+import retrofit2.http.Query
+import retrofit2.http.Streaming
+
+/**
+ * The Marathon event bus as a stream of server-sent events.
+ *
+ * @see <a href="https://mesosphere.github.io/marathon/docs/event-bus.html">Marathon event bus documentation</a>
+ */
+interface MarathonEvents {
+
+    @Streaming
+    @Headers("Accept: text/event-stream")
+    @GET("v2/events")
+    fun events(@Query("event_type") types: List<String>): Call<ResponseBody>
+
+    /**
+     * The fields of the events that name the affected apps.
+     */
+    data class Event(val eventType: String?, val appId: String?, val runSpecId: String?,
+                     val appDefinition: AppDefinition?, val plan: Plan?, val currentStep: Step?) {
+
+        /**
+         * @return the ids of all apps affected by this event
+         */
+        fun apps(): Set<String> {
+            val apps = LinkedHashSet<String>()
+            appId?.let { apps.add(it) }
+            runSpecId?.let { apps.add(it) }
+            appDefinition?.id?.let { apps.add(it) }
+            plan?.steps?.forEach { step -> step.apps(apps) }
+            currentStep?.apps(apps)
+            return apps
+        }
+    }
+
+    /**
+     * The app definition posted to the API, its labels tell if it is launchpad enabled.
+     */
+    data class AppDefinition(val id: String?, val labels: Map<String, String>?)
+
+    data class Plan(val id: String?, val steps: List<Step>?)
+
+    data class Step(val actions: List<StepAction>?) {
+        fun apps(apps: MutableSet<String>) = actions?.forEach { action -> action.app?.let { apps.add(it) } }
+    }
+
+    data class StepAction(val action: String?, val app: String?)
+}
@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.google.gson.JsonParser
+import okhttp3.Call
+import okhttp3.Connection
+import okhttp3.EventListener
+import okhttp3.HttpUrl
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import org.slf4j.Logger
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Sends the requests for the Marathon API directly to the Marathon leader instead of through the admin
+ * router of DC/OS. The leader is looked up with /v2/leader through the admin router. When a request is
+ * redirected to another Marathon instance, that one is the new leader. When the leader fails, the request
+ * is sent through the admin router and the leader is looked up again after [RETRY_PERIOD]. A request that
+ * may have reached the leader is only sent again if it is idempotent, so a scale is never applied twice.
+ * A request is known not to have reached the leader if no connection was established, e.g. because the
+ * TLS handshake failed. The interceptor has to be installed with [install] to see the connections.
+ *
+ * Marathon reports the address of its HTTP port as leader. The scheme and port of the leader can be
+ * configured, e.g. https and 8443. By default the scheme of the admin router is used if the leader
+ * listens on the same port, otherwise http. Requests with an Authorization header are never sent to a
+ * leader over plain HTTP, they go through the admin router instead.
+ *
+ * @param adminRouter the base URL of the Marathon API behind the admin router
+ * @param client the client to look up the leader, without this interceptor
+ * @param scheme the scheme of the leader URL, null for the default
+ * @param port the port of the leader URL, null for the reported one
+ */
+class MarathonLeaderInterceptor(private val adminRouter: HttpUrl,
+                                private val client: OkHttpClient,
+                                private val logger: Logger,
+                                private val clock: () -> Long = { System.currentTimeMillis() },
+                                private val scheme: String? = null,
+                                private val port: Int? = null) : Interceptor {
+
+    private val leader = AtomicReference<HttpUrl?>()
+    private val lookingUp = AtomicBoolean()
+
+    // when the leader was looked up the last time, or -RETRY_PERIOD for never
+    @Volatile private var lookedUp = -RETRY_PERIOD
+
+    // if the current request of this thread got a connection
+    private val connected = ThreadLocal<Boolean>()
+
+    private val listener = object : EventListener() {
+        override fun connectionAcquired(call: Call, connection: Connection) {
+            connected.set(true)
+        }
+    }
+
+    /**
+     * Add this interceptor and the listener for its connections to a client.
+     */
+    fun install(builder: OkHttpClient.Builder): OkHttpClient.Builder = builder.addInterceptor(this).eventListener(listener)
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val path = path(request.url()) ?: return chain.proceed(request)
+        return send(chain, path, MAX_REDIRECTS)
+    }
+
+    private fun send(chain: Interceptor.Chain, path: String, redirects: Int): Response {
+        val request = chain.request()
+        val leader = leader() ?: return chain.proceed(request)
+        if (!leader.isHttps && request.header("Authorization") != null) {
+            // the token must not cross the network unencrypted
+            return chain.proceed(request)
+        }
+
+        connected.set(false)
+        val response = try {
+            chain.proceed(request.newBuilder().url(url(leader, path, request.url())).build())
+        } catch (e: IOException) {
+            failed(leader, e.toString())
+            // a write that may have reached the leader must not be applied twice
+            if (connected.get() && !IDEMPOTENT.contains(request.method())) throw e
+            return chain.proceed(request)
+        } finally {
+            connected.remove()
+        }
+
+        if (response.priorResponse() != null) { // redirects of reads are followed by OkHttp
+            follow(leader, response.request().url())
+        } else if (response.isRedirect) {
+            val location = response.header("Location")?.let { response.request().url().resolve(it) }
+            if (location != null && redirects > 0) {
+                response.close()
+                follow(leader, location)
+                return send(chain, path, redirects - 1)
+            }
+        } else if (response.code() == 503) { // Marathon has no leader right now
+            response.close()
+            failed(leader, "503 Service Unavailable")
+            return chain.proceed(request)
+        }
+        return response
+    }
+
+    /**
+     * @return the path of the request below the Marathon API, or null if it is not a Marathon request
+     */
+    private fun path(url: HttpUrl): String? {
+        if (url.host() != adminRouter.host() || url.port() != adminRouter.port()) return null
+        val base = adminRouter.encodedPath()
+        return if (url.encodedPath().startsWith(base)) url.encodedPath().substring(base.length) else null
+    }
+
+    private fun url(leader: HttpUrl, path: String, url: HttpUrl): HttpUrl =
+            leader.newBuilder().encodedPath("/$path").encodedQuery(url.encodedQuery()).build()
+
+    /**
+     * @return the known leader, or the looked up one if the last lookup is long enough ago. Only one
+     * thread looks up the leader, all others use the admin router in the meantime.
+     */
+    private fun leader(): HttpUrl? {
+        leader.get()?.let { return it }
+        if (clock() - lookedUp < RETRY_PERIOD || !lookingUp.compareAndSet(false, true)) return null
+
+        try {
+            lookedUp = clock()
+            val found = lookup() ?: return null
+            if (leader.compareAndSet(null, found)) logger.info("Sending Marathon requests to the leader {}.", found)
+            return leader.get()
+        } finally {
+            lookingUp.set(false)
+        }
+    }
+
+    private fun lookup(): HttpUrl? {
+        try {
+            val request = Request.Builder().url(adminRouter.resolve("v2/leader")!!).build()
+            client.newCall(request).execute().use { response ->
+                if (!response.isSuccessful) {
+                    logger.warn("Could not look up the Marathon leader: {}", response.code())
+                    return null
+                }
+                val address = JsonParser().parse(response.body()!!.charStream()).asJsonObject["leader"].asString
+                val reported = HttpUrl.parse("http://$address/")!!
+                val port = this.port ?: reported.port()
+                val scheme = this.scheme ?: if (port == adminRouter.port()) adminRouter.scheme() else "http"
+                return reported.newBuilder().scheme(scheme).port(port).build()
+            }
+        } catch (e: Exception) {
+            logger.warn("Could not look up the Marathon leader.", e)
+            return null
+        }
+    }
+
+    private fun follow(leader: HttpUrl, url: HttpUrl) {
+        if (url.host() == leader.host() && url.port() == leader.port()) return
+        if (url.scheme() != leader.scheme()) {
+            failed(leader, "redirected to $url")
+        } else if (this.leader.compareAndSet(leader, HttpUrl.Builder().scheme(url.scheme()).host(url.host()).port(url.port()).build())) {
+            logger.info("The Marathon leader moved to {}.", this.leader.get())
+        }
+    }
+
+    private fun failed(leader: HttpUrl, reason: String) {
+        if (!this.leader.compareAndSet(leader, null)) return
+        lookedUp = clock()
+        logger.warn("The Marathon leader {} failed ({}), using the admin router.", leader, reason)
+    }
+
+    companion object {
+        /** Look up a failed leader again after 10 seconds. */
+        const val RETRY_PERIOD = 10000L
+
+        /** Follow the leader at most 3 times per request. */
+        private const val MAX_REDIRECTS = 3
+
+        /** The methods that may be sent again after the leader failed. */
+        private val IDEMPOTENT = setOf("GET", "HEAD")
+    }
+}
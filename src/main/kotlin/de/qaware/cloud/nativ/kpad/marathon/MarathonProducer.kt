@@ -25,49 +25,96 @@ package de.qaware.cloud.nativ.kpad.marathon
 
 import com.google.gson.GsonBuilder
 import com.moandjiezana.toml.Toml
+import okhttp3.Dispatcher
+import okhttp3.HttpUrl
 import okhttp3.OkHttpClient
 import org.apache.deltaspike.core.api.config.ConfigProperty
 import org.apache.deltaspike.core.api.exclude.Exclude
+import org.slf4j.LoggerFactory
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
 import java.io.File
+import java.util.concurrent.TimeUnit
 import javax.enterprise.context.ApplicationScoped
 import javax.enterprise.inject.Default
 import javax.enterprise.inject.Produces
 import javax.inject.Inject
 
 /**
- * The CDI producer for the Marathon Java API.
+ * The CDI producer for the Marathon Java API. The requests go through the admin router of DC/OS, or
+ * directly to the Marathon leader if marathon.leader is set.
  */
 @Exclude(onExpression = "cluster.service!=marathon")
 @ApplicationScoped
 open class MarathonProducer @Inject constructor(@ConfigProperty(name = "dcos.configPath")
-                                                private val configPath: String?) {
+                                                private val configPath: String?,
+                                                @ConfigProperty(name = "marathon.leader", defaultValue = "false")
+                                                private val leader: String = "false",
+                                                @ConfigProperty(name = "marathon.leader.scheme", defaultValue = "")
+                                                private val leaderScheme: String = "",
+                                                @ConfigProperty(name = "marathon.leader.port", defaultValue = "")
+                                                private val leaderPort: String = "") {
+
+    private val dcosConfig by lazy { getDcosConfig(getDcosConfigFile()) }
+
+    // shared by all clients, so they follow the same leader
+    private val leaderInterceptor by lazy {
+        MarathonLeaderInterceptor(HttpUrl.parse(apiEndpoint())!!, authorized(),
+                LoggerFactory.getLogger(MarathonLeaderInterceptor::class.java),
+                scheme = leaderScheme.takeIf { it.isNotEmpty() }, port = leaderPort.toIntOrNull())
+    }
 
     @Produces
     @Default
     open fun marathonClient(): MarathonClient {
-        val dcosConfigFile = getDcosConfigFile()
-        val dcosConfig = getDcosConfig(dcosConfigFile)
+        return retrofit(httpClient()).create(MarathonClient::class.java)
+    }
+
+    /**
+     * The event bus of Marathon. Its client has no read timeout, the event stream may be silent for a
+     * long time.
+     */
+    @Produces
+    @Default
+    open fun marathonEvents(): MarathonEvents {
+        val client = httpClient().newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build()
+        return retrofit(client).create(MarathonEvents::class.java)
+    }
 
-        val client = OkHttpClient.Builder()
+    private fun httpClient(): OkHttpClient {
+        val client = authorized()
+        return if (leader.toBoolean()) leaderInterceptor.install(client.newBuilder()).build() else client
+    }
+
+    private fun authorized(): OkHttpClient {
+        // all rows may scale at the same time while the apps are polled
+        val dispatcher = Dispatcher()
+        dispatcher.maxRequestsPerHost = MAX_REQUESTS
+
+        return OkHttpClient.Builder()
+                .dispatcher(dispatcher)
                 .addInterceptor { chain ->
                     val req = chain.request().newBuilder()
                             .header("Authorization", "token=${dcosConfig.accessToken}")
                             .build()
                     chain.proceed(req)
                 }.build()
+    }
 
+    private fun apiEndpoint(): String {
         val apiPath = if (dcosConfig.url.endsWith("/")) "service/marathon/" else "/service/marathon/"
-        val apiEndpoint = dcosConfig.url + apiPath
+        return dcosConfig.url + apiPath
+    }
 
-        val retrofit = Retrofit.Builder()
-                .baseUrl(apiEndpoint)
+    private fun retrofit(client: OkHttpClient): Retrofit {
+        return Retrofit.Builder()
+                .baseUrl(apiEndpoint())
+                .addConverterFactory(AppsConverterFactory())
                 .addConverterFactory(createGsonConverterFactory())
                 .client(client)
                 .build()
-
-        return retrofit.create(MarathonClient::class.java)
     }
 
     private fun getDcosConfig(dcosConfigFile: File): DcosConfig {
@@ -94,4 +141,9 @@ open class MarathonProducer @Inject constructor(@ConfigProperty(name = "dcos.con
     }
 
     private data class DcosConfig(val url: String, val accessToken: String)
+
+    companion object {
+        /** Send up to 16 requests to Marathon at the same time. */
+        const val MAX_REQUESTS = 16
+    }
 }
@@ -23,98 +23,61 @@
  */
 package de.qaware.cloud.nativ.kpad
 
+import de.qaware.cloud.nativ.kpad.launchpad.FrameBuffer
 import spock.lang.Specification
 
-import javax.sound.midi.Receiver
 import javax.sound.midi.ShortMessage
+import javax.sound.midi.SysexMessage
 
 import static de.qaware.cloud.nativ.kpad.launchpad.LaunchpadMK2.Button.*
 import static de.qaware.cloud.nativ.kpad.launchpad.LaunchpadMK2.Color.*
 
 /**
- * Simple Button spec to check basic receiver interaction.
+ * Simple Button spec to check the MIDI messages written for the buttons.
  */
 class ButtonSpec extends Specification {
 
-    def receiver = Mock(Receiver)
+    def frame = new FrameBuffer()
 
     def "turn Mixer button on red"() {
-        ShortMessage message
-        int time
-
         when:
-        MIXER.on(receiver, RED)
+        frame.set(MIXER.id, RED.value)
+        def message = frame.frame()[0] as SysexMessage
 
         then:
-        1 * receiver.send(*_) >> { arguments ->
-            message = arguments[0] as ShortMessage
-            time = arguments[1] as int
-        }
-
-        message.command == 176
-        message.channel == 0
-        message.data1 == 111
-        message.data2 == RED.value
-        time == -1
+        message.message.collect { it & 0xff } == [240, 0, 32, 41, 2, 24, 10, 111, RED.value, 247]
     }
 
     def "blink Session button with purple"() {
-        ShortMessage message
-        int time
-
         when:
-        SESSION.blink(receiver, PURPLE)
+        frame.effect(SESSION.id, FrameBuffer.Effect.BLINK, PURPLE.value)
+        def message = frame.frame()[0] as ShortMessage
 
         then:
-        1 * receiver.send(*_) >> { arguments ->
-            message = arguments[0] as ShortMessage
-            time = arguments[1] as int
-        }
-
         message.command == 176
         message.channel == 1
         message.data1 == 108
         message.data2 == PURPLE.value
-        time == -1
     }
 
     def "pulse Volume button with blue"() {
-        ShortMessage message
-        int time
-
         when:
-        VOLUME.pulse(receiver, BLUE)
+        frame.effect(VOLUME.id, FrameBuffer.Effect.PULSE, BLUE.value)
+        def message = frame.frame()[0] as ShortMessage
 
         then:
-        1 * receiver.send(*_) >> { arguments ->
-            message = arguments[0] as ShortMessage
-            time = arguments[1] as int
-        }
-
         message.command == 144
         message.channel == 2
         message.data1 == 89
         message.data2 == BLUE.value
-        time == -1
     }
 
     def "turn Record button off"() {
-        ShortMessage message
-        int time
-
         when:
-        RECORD.off(receiver)
+        frame.set(RECORD.id, 0)
+        def message = frame.frame()[0] as SysexMessage
 
         then:
-        1 * receiver.send(*_) >> { arguments ->
-            message = arguments[0] as ShortMessage
-            time = arguments[1] as int
-        }
-
-        message.command == 144
-        message.channel == 0
-        message.data1 == 19
-        message.data2 == 0
-        time == -1
+        message.message.collect { it & 0xff } == [240, 0, 32, 41, 2, 24, 10, 19, 0, 247]
     }
 }
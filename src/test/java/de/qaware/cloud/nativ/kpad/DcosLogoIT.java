@@ -23,6 +23,7 @@
  */
 package de.qaware.cloud.nativ.kpad;
 
+import de.qaware.cloud.nativ.kpad.launchpad.FrameBuffer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -30,7 +31,6 @@ import org.junit.Test;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.Receiver;
 import javax.sound.midi.Transmitter;
-import java.util.Arrays;
 
 import static de.qaware.cloud.nativ.kpad.launchpad.LaunchpadMK2.*;
 import static org.hamcrest.Matchers.is;
@@ -44,6 +44,7 @@ public class DcosLogoIT {
 
     private Transmitter transmitter;
     private Receiver receiver;
+    private final FrameBuffer frame = new FrameBuffer();
 
     @Before
     public void setUp() throws Exception {
@@ -71,78 +72,79 @@ public class DcosLogoIT {
         top();
         right();
         dcos();
+
+        // all lights are written at once
+        frame.frame().forEach(message -> receiver.send(message, -1));
     }
 
     private void dcos() {
         // D
-        new Square(7, 0).on(receiver, Color.CYAN);
-        new Square(7, 1).on(receiver, Color.CYAN);
-        new Square(6, 0).on(receiver, Color.CYAN);
-        new Square(6, 2).on(receiver, Color.CYAN);
-        new Square(5, 0).on(receiver, Color.CYAN);
-        new Square(5, 2).on(receiver, Color.CYAN);
-        new Square(4, 0).on(receiver, Color.CYAN);
-        new Square(4, 1).on(receiver, Color.CYAN);
+        on(new Square(7, 0), Color.CYAN);
+        on(new Square(7, 1), Color.CYAN);
+        on(new Square(6, 0), Color.CYAN);
+        on(new Square(6, 2), Color.CYAN);
+        on(new Square(5, 0), Color.CYAN);
+        on(new Square(5, 2), Color.CYAN);
+        on(new Square(4, 0), Color.CYAN);
+        on(new Square(4, 1), Color.CYAN);
 
         // C
-        new Square(7, 4).on(receiver, Color.ORANGE);
-        new Square(7, 5).on(receiver, Color.ORANGE);
-        new Square(6, 3).on(receiver, Color.ORANGE);
-        new Square(5, 3).on(receiver, Color.ORANGE);
-        new Square(4, 4).on(receiver, Color.ORANGE);
-        new Square(4, 5).on(receiver, Color.ORANGE);
+        on(new Square(7, 4), Color.ORANGE);
+        on(new Square(7, 5), Color.ORANGE);
+        on(new Square(6, 3), Color.ORANGE);
+        on(new Square(5, 3), Color.ORANGE);
+        on(new Square(4, 4), Color.ORANGE);
+        on(new Square(4, 5), Color.ORANGE);
 
         // O
-        new Square(1, 0).on(receiver, Color.PURPLE);
-        new Square(2, 0).on(receiver, Color.PURPLE);
-        new Square(0, 1).on(receiver, Color.PURPLE);
-        new Square(3, 1).on(receiver, Color.PURPLE);
-        new Square(0, 2).on(receiver, Color.PURPLE);
-        new Square(3, 2).on(receiver, Color.PURPLE);
-        new Square(1, 3).on(receiver, Color.PURPLE);
-        new Square(2, 3).on(receiver, Color.PURPLE);
+        on(new Square(1, 0), Color.PURPLE);
+        on(new Square(2, 0), Color.PURPLE);
+        on(new Square(0, 1), Color.PURPLE);
+        on(new Square(3, 1), Color.PURPLE);
+        on(new Square(0, 2), Color.PURPLE);
+        on(new Square(3, 2), Color.PURPLE);
+        on(new Square(1, 3), Color.PURPLE);
+        on(new Square(2, 3), Color.PURPLE);
 
         // S
-        new Square(0, 5).on(receiver, Color.LIGHT_GREEN);
-        new Square(0, 6).on(receiver, Color.LIGHT_GREEN);
-        new Square(1, 7).on(receiver, Color.LIGHT_GREEN);
-        new Square(2, 6).on(receiver, Color.LIGHT_GREEN);
-        new Square(3, 5).on(receiver, Color.LIGHT_GREEN);
-        new Square(4, 7).on(receiver, Color.LIGHT_GREEN);
-        new Square(4, 6).on(receiver, Color.LIGHT_GREEN);
+        on(new Square(0, 5), Color.LIGHT_GREEN);
+        on(new Square(0, 6), Color.LIGHT_GREEN);
+        on(new Square(1, 7), Color.LIGHT_GREEN);
+        on(new Square(2, 6), Color.LIGHT_GREEN);
+        on(new Square(3, 5), Color.LIGHT_GREEN);
+        on(new Square(4, 7), Color.LIGHT_GREEN);
+        on(new Square(4, 6), Color.LIGHT_GREEN);
 
     }
 
     private void right() {
-        Button.Companion.right(0).on(receiver, Color.PURPLE);
-        Button.Companion.right(1).on(receiver, Color.PURPLE);
-        Button.Companion.right(2).on(receiver, Color.PURPLE);
-        Button.Companion.right(3).on(receiver, Color.PURPLE);
-        Button.Companion.right(4).on(receiver, Color.PURPLE);
-        Button.Companion.right(5).on(receiver, Color.PURPLE);
-        Button.Companion.right(6).on(receiver, Color.PURPLE);
-        Button.Companion.right(7).on(receiver, Color.PURPLE);
+        on(Button.Companion.right(0), Color.PURPLE);
+        on(Button.Companion.right(1), Color.PURPLE);
+        on(Button.Companion.right(2), Color.PURPLE);
+        on(Button.Companion.right(3), Color.PURPLE);
+        on(Button.Companion.right(4), Color.PURPLE);
+        on(Button.Companion.right(5), Color.PURPLE);
+        on(Button.Companion.right(6), Color.PURPLE);
+        on(Button.Companion.right(7), Color.PURPLE);
     }
 
     private void top() {
-        Button.CURSOR_UP.on(receiver, Color.BLUE);
-        Button.CURSOR_DOWN.on(receiver, Color.BLUE);
-        Button.CURSOR_LEFT.on(receiver, Color.BLUE);
-        Button.CURSOR_RIGHT.on(receiver, Color.BLUE);
-
-        Button.SESSION.on(receiver, Color.RED);
-        Button.USER_1.on(receiver, Color.LIGHT_GREEN);
-        Button.USER_2.on(receiver, Color.YELLOW);
-        Button.MIXER.on(receiver, Color.LIGHT_BLUE);
+        on(Button.CURSOR_UP, Color.BLUE);
+        on(Button.CURSOR_DOWN, Color.BLUE);
+        on(Button.CURSOR_LEFT, Color.BLUE);
+        on(Button.CURSOR_RIGHT, Color.BLUE);
+
+        on(Button.SESSION, Color.RED);
+        on(Button.USER_1, Color.LIGHT_GREEN);
+        on(Button.USER_2, Color.YELLOW);
+        on(Button.MIXER, Color.LIGHT_BLUE);
     }
 
     private void reset() {
-        Arrays.stream(Button.values()).forEach(button -> button.off(receiver));
+        frame.clear();
+    }
 
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                new Square(r, c).off(receiver);
-            }
-        }
+    private void on(Switchable switchable, Color color) {
+        frame.set(switchable.getId(), color.getValue());
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad
+
+import org.junit.After
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletableFuture.completedFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class AdaptivePollerTest {
+
+    val scheduler = Executors.newScheduledThreadPool(4)
+
+    @After
+    fun shutdown() {
+        scheduler.shutdownNow()
+    }
+
+    @Test
+    fun intervalBacksOffWhileIdle() {
+        val intervals = Collections.synchronizedList(mutableListOf<Long>())
+        val done = CountDownLatch(6)
+        var poller: AdaptivePoller? = null
+        poller = AdaptivePoller(scheduler, scheduler, 1, 8, { false }) {
+            intervals.add(poller!!.interval)
+            done.countDown()
+            completedFuture(null)
+        }
+        poller.start()
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        poller.stop()
+        assertEquals(listOf(1L, 2L, 4L, 8L, 8L, 8L), intervals.take(6))
+    }
+
+    @Test
+    fun intervalStaysShortWhileBusy() {
+        val done = CountDownLatch(4)
+        val poller = AdaptivePoller(scheduler, scheduler, 1, 1000, { true }) {
+            done.countDown()
+            completedFuture(null)
+        }
+        poller.start()
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Polling should not back off while busy")
+        poller.stop()
+        assertEquals(1L, poller.interval)
+    }
+
+    @Test
+    fun runsNeverOverlap() {
+        val active = AtomicInteger()
+        val overlaps = AtomicInteger()
+        val done = CountDownLatch(5)
+        val poller = AdaptivePoller(scheduler, scheduler, 1, 1, { true }) {
+            if (active.incrementAndGet() > 1) overlaps.incrementAndGet()
+            // completes later on another thread like a response
+            CompletableFuture.runAsync {
+                Thread.sleep(20)
+                active.decrementAndGet()
+                done.countDown()
+            }
+        }
+        poller.start()
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        poller.stop()
+        assertEquals(0, overlaps.get())
+    }
+
+    @Test
+    fun wakeShortensTheInterval() {
+        val runs = AtomicInteger()
+        val poller = AdaptivePoller(scheduler, scheduler, 10, 5000, { false }) {
+            runs.incrementAndGet()
+            completedFuture(null)
+        }
+        poller.start()
+        while (poller.interval < 320) Thread.sleep(10)
+
+        val before = runs.get()
+        poller.wake()
+        Thread.sleep(100)
+        poller.stop()
+        assertTrue(runs.get() > before, "A woken poller should run within the minimum interval")
+    }
+
+    @Test
+    fun runNowRunsAtOnce() {
+        val runs = AtomicInteger()
+        val poller = AdaptivePoller(scheduler, scheduler, 5000, 5000, { false }) {
+            runs.incrementAndGet()
+            completedFuture(null)
+        }
+        poller.start()
+        while (runs.get() < 1) Thread.sleep(10)
+
+        poller.runNow()
+        Thread.sleep(100)
+        poller.stop()
+        assertEquals(2, runs.get(), "The task should run at once instead of after the interval")
+    }
+}
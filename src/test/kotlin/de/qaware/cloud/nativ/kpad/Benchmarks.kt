@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad
+
+import java.lang.management.ManagementFactory
+
+/**
+ * The measurement shared by the benchmarks, they are run by their main methods.
+ */
+object Benchmarks {
+
+    /**
+     * Warm up, then print the time and the allocated bytes per round.
+     *
+     * @param name the name printed in front of the results
+     * @param warmup the number of rounds before measuring
+     * @param rounds the number of measured rounds
+     * @param items the number of items each round must decode, checked while warming up
+     * @param round one round, returns the number of decoded items
+     */
+    fun measure(name: String, warmup: Int, rounds: Int, items: Int, round: () -> Int) {
+        val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val thread = Thread.currentThread().id
+
+        0.until(warmup).forEach { check(round() == items) }
+
+        val bytes = threads.getThreadAllocatedBytes(thread)
+        val start = System.nanoTime()
+        0.until(rounds).forEach { round() }
+        val nanos = (System.nanoTime() - start) / rounds
+        val allocated = (threads.getThreadAllocatedBytes(thread) - bytes) / rounds
+
+        println("%-8s %8.3f ms/list %10d bytes/list".format(name, nanos / 1e6, allocated))
+    }
+}
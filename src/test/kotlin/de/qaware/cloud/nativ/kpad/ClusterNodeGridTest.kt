@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad
+
+import org.junit.After
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import java.util.*
+import java.util.concurrent.Executors
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class ClusterNodeGridTest {
+
+    val pool = Executors.newFixedThreadPool(4)
+    val events = RecordingEvent<ClusterNodeEvent>()
+    val scaled = Collections.synchronizedSet(mutableSetOf<Int>())
+
+    val cluster = object : Cluster {
+        override fun appExists(appIndex: Int) = true
+        override fun replicas(appIndex: Int) = 0
+        override fun labels(appIndex: Int) = emptyMap<String, String>()
+        override fun reset() {}
+
+        override fun scale(appIndex: Int, replicas: Int) {
+            if (appIndex == 1) throw IllegalStateException("Scaling row 1 is not allowed.")
+            scaled.add(appIndex)
+        }
+    }
+
+    @After
+    fun shutdown() {
+        pool.shutdownNow()
+    }
+
+    @Test
+    fun failedRowsAreShownWhenScaledRowByRow() {
+        val grid = ClusterNodeGrid(pool, events, cluster, LoggerFactory.getLogger(ClusterNodeGridTest::class.java))
+        grid.init()
+
+        grid.scaleAll(mapOf(0 to 1, 1 to 1, 2 to 1))
+
+        val end = System.currentTimeMillis() + 5000
+        while (scaled.size < 2 || !events.fired.contains(ClusterNodeEvent(1, 8))) {
+            assertTrue(System.currentTimeMillis() < end, "Timed out, events: ${events.fired}")
+            Thread.sleep(10)
+        }
+        assertEquals(setOf(0, 2), scaled)
+        assertFalse(events.fired.contains(ClusterNodeEvent(0, 8)))
+        assertFalse(events.fired.contains(ClusterNodeEvent(2, 8)))
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad
+
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+import javax.enterprise.event.Event
+import javax.enterprise.util.TypeLiteral
+
+/**
+ * An event that records the fired payloads instead of notifying observers, for tests without a container.
+ */
+class RecordingEvent<T> : Event<T> {
+
+    val fired = CopyOnWriteArrayList<T>()
+
+    override fun fire(event: T) {
+        fired.add(event)
+    }
+
+    override fun <U : T> fireAsync(event: U): CompletionStage<U> = throw UnsupportedOperationException()
+
+    override fun <U : T> fireAsync(event: U, executor: Executor): CompletionStage<U> = throw UnsupportedOperationException()
+
+    override fun select(vararg qualifiers: Annotation): Event<T> = this
+
+    override fun <U : T> select(subtype: Class<U>, vararg qualifiers: Annotation): Event<U> = throw UnsupportedOperationException()
+
+    override fun <U : T> select(subtype: TypeLiteral<U>, vararg qualifiers: Annotation): Event<U> = throw UnsupportedOperationException()
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad
+
+import org.junit.After
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class SerialExecutorTest {
+
+    val pool = Executors.newFixedThreadPool(4)
+
+    @After
+    fun shutdown() {
+        pool.shutdownNow()
+    }
+
+    @Test
+    fun tasksRunInSubmissionOrder() {
+        val serial = SerialExecutor(pool)
+        val order = Collections.synchronizedList(mutableListOf<Int>())
+        val done = CountDownLatch(100)
+
+        0.until(100).forEach { i ->
+            serial.execute {
+                order.add(i)
+                done.countDown()
+            }
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertEquals(0.until(100).toList(), order)
+    }
+
+    @Test
+    fun differentExecutorsRunConcurrently() {
+        val started = CountDownLatch(2)
+        val release = CountDownLatch(1)
+
+        0.until(2).forEach {
+            SerialExecutor(pool).execute {
+                started.countDown()
+                release.await()
+            }
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS), "Tasks of different serial executors should overlap")
+        release.countDown()
+    }
+
+    @Test
+    fun asyncTasksHoldTheQueue() {
+        val serial = SerialExecutor(pool)
+        val stage = CompletableFuture<Void>()
+        val started = CountDownLatch(1)
+        val done = CountDownLatch(1)
+
+        serial.executeAsync {
+            started.countDown()
+            stage
+        }
+        serial.execute { done.countDown() }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS))
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS), "The next task should wait for the stage")
+        stage.complete(null)
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import de.qaware.cloud.nativ.kpad.Benchmarks
+import de.qaware.cloud.nativ.kpad.kubernetes.ProtobufWriter.envelope
+import de.qaware.cloud.nativ.kpad.kubernetes.ProtobufWriter.message
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+
+/**
+ * Compares decoding a list of Deployments in JSON and in protobuf. Run the main method, it prints the
+ * time and the allocated bytes per decoded list.
+ */
+object CodecBenchmark {
+
+    private const val DEPLOYMENTS = 200
+    private const val WARMUP = 1000
+    private const val ROUNDS = 500
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val json = json().toByteArray()
+        val protobuf = envelope(message(1 to message(2 to "1000"), *0.until(DEPLOYMENTS).map { 2 to protobuf(it) }.toTypedArray()))
+        println("JSON list: ${json.size} bytes, protobuf list: ${protobuf.size} bytes")
+
+        measure("json", JsonCodec(Workload::class.java), MediaType.parse("application/json"), json)
+        measure("protobuf", DeploymentProtobufCodec(), MediaType.parse(ProtobufCodec.MEDIA_TYPE), protobuf)
+    }
+
+    private fun measure(name: String, codec: Codec<Workload>, type: MediaType?, body: ByteArray) {
+        Benchmarks.measure(name, WARMUP, ROUNDS, DEPLOYMENTS) { codec.page(ResponseBody.create(type, body)).items.size }
+    }
+
+    private fun json(): String = 0.until(DEPLOYMENTS).joinToString(",",
+            """{"kind":"DeploymentList","apiVersion":"apps/v1","metadata":{"resourceVersion":"1000"},"items":[""", "]}") {
+        """{"metadata":{"name":"app-$it","namespace":"default","uid":"uid-$it","resourceVersion":"$it","generation":2,""" +
+                """"creationTimestamp":"2018-01-01T00:00:00Z","labels":{"LAUNCHPAD_ENABLE":"true","LAUNCHPAD_COLOR":"BLUE"},""" +
+                """"annotations":{"deployment.kubernetes.io/revision":"2","note":"${"x".repeat(200)}"},""" +
+                """"managedFields":[{"manager":"kubectl","operation":"Update","fieldsV1":{"f:spec":{"f:replicas":{}}}}]},""" +
+                """"spec":{"replicas":3,"selector":{"matchLabels":{"app":"app-$it"}},"template":{"metadata":{"labels":{"app":"app-$it"}},""" +
+                """"spec":{"containers":[{"name":"app","image":"registry/app:1.0","ports":[{"containerPort":8080}]}]}}},""" +
+                """"status":{"observedGeneration":2,"replicas":3,"updatedReplicas":3,"readyReplicas":3,""" +
+                """"conditions":[{"type":"Available","status":"True","reason":"MinimumReplicasAvailable"}]}}"""
+    }
+
+    private fun protobuf(i: Int) = message(
+            1 to message(
+                    1 to "app-$i", 3 to "default", 5 to "uid-$i", 6 to "$i", 7 to 2, 8 to message(1 to 1514764800),
+                    11 to message(1 to "LAUNCHPAD_ENABLE", 2 to "true"),
+                    11 to message(1 to "LAUNCHPAD_COLOR", 2 to "BLUE"),
+                    12 to message(1 to "deployment.kubernetes.io/revision", 2 to "2"),
+                    12 to message(1 to "note", 2 to "x".repeat(200)),
+                    17 to message(1 to "kubectl", 2 to "Update", 7 to message(1 to "{\"f:spec\":{\"f:replicas\":{}}}"))),
+            2 to message(
+                    1 to 3,
+                    2 to message(1 to message(1 to "app", 2 to "app-$i")),
+                    3 to message(
+                            1 to message(11 to message(1 to "app", 2 to "app-$i")),
+                            2 to message(2 to message(1 to "app", 2 to "registry/app:1.0", 6 to message(3 to 8080))))),
+            3 to message(1 to 2, 2 to 3, 3 to 3, 7 to 3,
+                    6 to message(1 to "Available", 2 to "True", 5 to "MinimumReplicasAvailable")))
+}
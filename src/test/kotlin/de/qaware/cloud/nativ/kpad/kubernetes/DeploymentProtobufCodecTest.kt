@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import okio.Buffer
+import de.qaware.cloud.nativ.kpad.kubernetes.ProtobufWriter.envelope
+import de.qaware.cloud.nativ.kpad.kubernetes.ProtobufWriter.message
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class DeploymentProtobufCodecTest {
+
+    val codec = DeploymentProtobufCodec()
+
+    @Test
+    fun decodesListPage() {
+        val list = message(
+                1 to message(2 to "42", 3 to "next"),
+                2 to deployment("a", "5", 3, 2),
+                2 to deployment("b", "6", 1, 1))
+
+        val page = codec.page(ResponseBody.create(MediaType.parse(ProtobufCodec.MEDIA_TYPE), envelope(list)))
+
+        assertEquals("42", page.resourceVersion)
+        assertEquals("next", page.token)
+        assertEquals(listOf("a", "b"), page.items.map { it.metadata!!.name })
+        val a = page.items[0]
+        assertEquals("5", a.metadata!!.resourceVersion)
+        assertEquals(2L, a.metadata!!.generation)
+        assertEquals(mapOf("LAUNCHPAD_ENABLE" to "true", "LAUNCHPAD_COLOR" to "RED"), a.metadata!!.labels)
+        assertEquals("ReplicaSet", a.metadata!!.ownerReferences.single().kind)
+        assertEquals(true, a.metadata!!.ownerReferences.single().controller)
+        assertEquals(3, a.spec.replicas)
+        assertEquals(2L, a.status.observedGeneration)
+        assertEquals(2, a.status.readyReplicas)
+        assertEquals(3, a.status.updatedReplicas)
+    }
+
+    @Test
+    fun decodesWatchFrames() {
+        val stream = Buffer()
+        frame(stream, "MODIFIED", deployment("a", "7", 4, 4))
+        frame(stream, "BOOKMARK", message(1 to message(6 to "9")))
+        frame(stream, "ERROR", message(3 to "too old resource version", 6 to 410))
+
+        val modified = codec.next(stream)!!
+        assertEquals("MODIFIED", modified.type)
+        assertEquals(4, modified.resource!!.spec.replicas)
+
+        val bookmark = codec.next(stream)!!
+        assertEquals("BOOKMARK", bookmark.type)
+        assertEquals("9", bookmark.resourceVersion)
+
+        val error = codec.next(stream)!!
+        assertEquals(410, error.code)
+        assertEquals("too old resource version", error.message)
+
+        assertNull(codec.next(stream))
+    }
+
+    @Test
+    fun readsResourceVersionOfScale() {
+        val scale = message(1 to message(1 to "a", 6 to "12"), 2 to message(1 to 3))
+        assertEquals("12", ProtobufCodec.resourceVersion(envelope(scale)))
+    }
+
+    private fun deployment(name: String, resourceVersion: String, replicas: Int, ready: Int) = message(
+            1 to message(
+                    1 to name,
+                    3 to "default",
+                    6 to resourceVersion,
+                    7 to 2,
+                    8 to message(1 to 1500000000),
+                    11 to message(1 to "LAUNCHPAD_ENABLE", 2 to "true"),
+                    11 to message(1 to "LAUNCHPAD_COLOR", 2 to "RED"),
+                    12 to message(1 to "note", 2 to "skipped"),
+                    13 to message(1 to "ReplicaSet", 3 to "$name-1", 4 to "uid", 5 to "apps/v1", 6 to true)),
+            2 to message(1 to replicas, 3 to message(1 to message(1 to "c"))),
+            3 to message(1 to 2, 2 to replicas, 3 to replicas, 7 to ready))
+
+    // the watch event itself has no envelope, only the object in its RawExtension
+    private fun frame(stream: Buffer, type: String, resource: ByteArray) {
+        val event = message(1 to type, 2 to message(1 to envelope(resource)))
+        stream.writeInt(event.size).write(event)
+    }
+}
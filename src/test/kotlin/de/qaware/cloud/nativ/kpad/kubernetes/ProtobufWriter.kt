@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import java.io.ByteArrayOutputStream
+
+/**
+ * Encodes messages in the Kubernetes protobuf wire format for tests.
+ */
+object ProtobufWriter {
+
+    fun envelope(raw: ByteArray): ByteArray =
+            byteArrayOf('k'.toByte(), '8'.toByte(), 's'.toByte(), 0) + message(2 to raw)
+
+    /**
+     * Encode the given fields, values are varints, strings or embedded messages.
+     */
+    fun message(vararg fields: Pair<Int, Any>): ByteArray {
+        val out = ByteArrayOutputStream()
+        fields.forEach { (field, value) ->
+            when (value) {
+                is Int, is Boolean -> {
+                    varint(out, field.toLong() shl 3)
+                    varint(out, if (value is Boolean) (if (value) 1L else 0L) else (value as Int).toLong())
+                }
+                else -> {
+                    val bytes = if (value is String) value.toByteArray() else value as ByteArray
+                    varint(out, (field.toLong() shl 3) or 2)
+                    varint(out, bytes.size.toLong())
+                    out.write(bytes)
+                }
+            }
+        }
+        return out.toByteArray()
+    }
+
+    private fun varint(out: ByteArrayOutputStream, value: Long) {
+        var v = value
+        while (v and 0x7fL.inv() != 0L) {
+            out.write(((v and 0x7f) or 0x80).toInt())
+            v = v ushr 7
+        }
+        out.write(v.toInt())
+    }
+}
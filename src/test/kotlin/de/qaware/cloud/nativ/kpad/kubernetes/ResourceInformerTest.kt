@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import com.github.tomakehurst.wiremock.stubbing.Scenario
+import io.fabric8.kubernetes.client.ConfigBuilder
+import io.fabric8.kubernetes.client.DefaultKubernetesClient
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler
+import okhttp3.OkHttpClient
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class ResourceInformerTest {
+
+    @Rule @JvmField
+    val wireMockRule = WireMockRule(8089)
+
+    private val path = "/apis/apps/v1/namespaces/default/deployments"
+    private val scheduler = Executors.newScheduledThreadPool(2)
+    private val client = DefaultKubernetesClient(ConfigBuilder().withMasterUrl("http://localhost:8089").build())
+    private val informer = ResourceInformer(Workload::class.java, client.apps().deployments().inNamespace("default"),
+            OkHttpClient(), scheduler, LoggerFactory.getLogger(ResourceInformerTest::class.java))
+    private val events = CopyOnWriteArrayList<String>()
+
+    init {
+        informer.addEventHandler(object : ResourceEventHandler<Workload> {
+            override fun onAdd(obj: Workload) {
+                events.add("ADDED ${obj.metadata!!.name}")
+            }
+
+            override fun onUpdate(oldObj: Workload, newObj: Workload) {
+                events.add("MODIFIED ${newObj.metadata!!.name} ${newObj.metadata!!.resourceVersion}")
+            }
+
+            override fun onDelete(obj: Workload, deletedFinalStateUnknown: Boolean) {
+                events.add("DELETED ${obj.metadata!!.name}")
+            }
+        })
+    }
+
+    @Before
+    fun init() {
+        // later watches hang until the informer is stopped
+        wireMockRule.stubFor(get(urlPathEqualTo(path)).atPriority(10).withQueryParam("watch", equalTo("true"))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(10000)))
+    }
+
+    @After
+    fun stop() {
+        informer.stop()
+        scheduler.shutdownNow()
+    }
+
+    @Test
+    fun resumesFromBookmark() {
+        wireMockRule.stubFor(list().willReturn(json(list("10", null, deployment("a", "5")))))
+        wireMockRule.stubFor(watch("10").willReturn(json(event("BOOKMARK", """{"kind":"Deployment","metadata":{"resourceVersion":"15"}}"""))))
+        wireMockRule.stubFor(watch("15").willReturn(json(event("MODIFIED", deployment("a", "16")))))
+
+        informer.run()
+        await { events.contains("MODIFIED a 16") }
+
+        assertEquals(listOf("ADDED a", "MODIFIED a 16"), events)
+        wireMockRule.verify(getRequestedFor(urlPathEqualTo(path)).withQueryParam("watch", equalTo("true"))
+                .withQueryParam("resourceVersion", equalTo("10")).withQueryParam("allowWatchBookmarks", equalTo("true")))
+        await { wireMockRule.findAll(getRequestedFor(urlPathEqualTo(path)).withQueryParam("resourceVersion", equalTo("16"))).isNotEmpty() }
+    }
+
+    @Test
+    fun relistsAfterGone() {
+        wireMockRule.stubFor(list().inScenario("list").whenScenarioStateIs(Scenario.STARTED).willSetStateTo("relist")
+                .willReturn(json(list("10", null, deployment("a", "5"), deployment("b", "6")))))
+        wireMockRule.stubFor(list().inScenario("list").whenScenarioStateIs("relist")
+                .willReturn(json(list("20", null, deployment("a", "5")))))
+        wireMockRule.stubFor(watch("10").willReturn(json(event("ERROR", """{"kind":"Status","code":410,"message":"too old"}"""))))
+
+        informer.run()
+        await { events.contains("DELETED b") }
+
+        assertEquals(listOf("ADDED a", "ADDED b", "DELETED b"), events)
+        assertEquals(listOf("a"), informer.list().map { it.metadata!!.name })
+        await { wireMockRule.findAll(getRequestedFor(urlPathEqualTo(path)).withQueryParam("resourceVersion", equalTo("20"))).isNotEmpty() }
+    }
+
+    @Test
+    fun restartsExpiredList() {
+        wireMockRule.stubFor(list().withQueryParam("continue", absent()).inScenario("list").whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("expired").willReturn(json(list("10", "c1", deployment("a", "5")))))
+        wireMockRule.stubFor(list().withQueryParam("continue", equalTo("c1")).inScenario("list").whenScenarioStateIs("expired")
+                .willReturn(aResponse().withStatus(410)))
+        wireMockRule.stubFor(list().withQueryParam("continue", absent()).inScenario("list").whenScenarioStateIs("expired")
+                .willReturn(json(list("12", null, deployment("a", "5"), deployment("b", "6")))))
+
+        informer.run()
+
+        assertEquals(listOf("a", "b"), informer.list().map { it.metadata!!.name }.sorted())
+        assertEquals(listOf("ADDED a", "ADDED b"), events)
+        wireMockRule.verify(2, getRequestedFor(urlPathEqualTo(path)).withQueryParam("limit", equalTo("100"))
+                .withQueryParam("continue", absent()))
+        await { wireMockRule.findAll(getRequestedFor(urlPathEqualTo(path)).withQueryParam("resourceVersion", equalTo("12"))).isNotEmpty() }
+    }
+
+    @Test
+    fun excludesLabels() {
+        val selected = ResourceInformer(Workload::class.java, client.apps().replicaSets().inNamespace("default"),
+                OkHttpClient(), scheduler, LoggerFactory.getLogger(ResourceInformerTest::class.java),
+                mapOf("LAUNCHPAD_ENABLE" to "true"), setOf("pod-template-hash"))
+        val replicaSets = "/apis/apps/v1/namespaces/default/replicasets"
+        wireMockRule.stubFor(get(urlPathEqualTo(replicaSets)).willReturn(json(list("10", null))))
+
+        try {
+            selected.run()
+        } finally {
+            selected.stop()
+        }
+
+        wireMockRule.verify(getRequestedFor(urlPathEqualTo(replicaSets)).withQueryParam("limit", equalTo("100"))
+                .withQueryParam("labelSelector", equalTo("LAUNCHPAD_ENABLE=true,!pod-template-hash")))
+    }
+
+    @Test
+    fun keepsNewerVersionOnUpdate() {
+        wireMockRule.stubFor(list().willReturn(json(list("10", null, deployment("a", "5")))))
+        wireMockRule.stubFor(watch("10").willReturn(json(event("MODIFIED", deployment("a", "7")))))
+
+        informer.run()
+        await { events.contains("MODIFIED a 7") }
+
+        val scaled = informer["a"]!!.scaled("6", 2)
+        assertFalse(informer.update(scaled, "5"))
+        assertEquals("7", informer["a"]!!.metadata!!.resourceVersion)
+
+        assertTrue(informer.update(informer["a"]!!.scaled("8", 2), "7"))
+        assertEquals("8", informer["a"]!!.metadata!!.resourceVersion)
+        assertEquals(2, informer["a"]!!.spec.replicas)
+    }
+
+    @Test
+    fun storesOnlyKeptResources() {
+        informer.addStoreFilter { it.metadata!!.name != "b" }
+        wireMockRule.stubFor(list().willReturn(json(list("10", null, deployment("a", "5"), deployment("b", "6")))))
+        wireMockRule.stubFor(watch("10").willReturn(json(event("MODIFIED", deployment("b", "11")) + event("MODIFIED", deployment("a", "12")))))
+
+        informer.run()
+        await { events.contains("MODIFIED a 12") }
+
+        assertEquals(listOf("ADDED a", "MODIFIED a 12"), events)
+        assertEquals(listOf("a"), informer.list().map { it.metadata!!.name })
+        await { wireMockRule.findAll(getRequestedFor(urlPathEqualTo(path)).withQueryParam("resourceVersion", equalTo("12"))).isNotEmpty() }
+    }
+
+    private fun list() = get(urlPathEqualTo(path)).withQueryParam("limit", equalTo("100"))
+
+    private fun watch(resourceVersion: String) = get(urlPathEqualTo(path)).atPriority(1)
+            .withQueryParam("watch", equalTo("true")).withQueryParam("resourceVersion", equalTo(resourceVersion))
+
+    private fun json(body: String) = aResponse().withStatus(200).withHeader("Content-Type", "application/json").withBody(body)
+
+    private fun list(resourceVersion: String, token: String?, vararg items: String) =
+            """{"kind":"DeploymentList","apiVersion":"apps/v1","metadata":{"resourceVersion":"$resourceVersion"""" +
+                    (if (token != null) ""","continue":"$token"""" else "") + """},"items":[${items.joinToString(",")}]}"""
+
+    private fun event(type: String, obj: String) = """{"type":"$type","object":$obj}""" + "\n"
+
+    private fun deployment(name: String, resourceVersion: String) =
+            """{"kind":"Deployment","apiVersion":"apps/v1","metadata":{"name":"$name","namespace":"default",""" +
+                    """"resourceVersion":"$resourceVersion"},"spec":{"replicas":1},"status":{"replicas":1}}"""
+
+    private fun await(condition: () -> Boolean) {
+        val end = System.currentTimeMillis() + 5000
+        while (!condition()) {
+            assertTrue(System.currentTimeMillis() < end, "Timed out, events: $events")
+            Thread.sleep(10)
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import com.github.tomakehurst.wiremock.stubbing.Scenario
+import io.fabric8.kubernetes.client.ConfigBuilder
+import io.fabric8.kubernetes.client.DefaultKubernetesClient
+import io.fabric8.kubernetes.client.KubernetesClientException
+import okhttp3.OkHttpClient
+import org.junit.Rule
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class ScaleSubresourceTest {
+
+    @Rule @JvmField
+    val wireMockRule = WireMockRule(8089)
+
+    private val path = "/apis/apps/v1/namespaces/default/deployments/x/scale"
+    private val client = DefaultKubernetesClient(ConfigBuilder().withMasterUrl("http://localhost:8089").build())
+    private val scaler = ScaleSubresource(client.apps().deployments().inNamespace("default"),
+            OkHttpClient(), LoggerFactory.getLogger(ScaleSubresourceTest::class.java))
+
+    @Test
+    fun retriesConflict() {
+        wireMockRule.stubFor(patch(urlEqualTo(path)).inScenario("scale").whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("conflict").willReturn(aResponse().withStatus(409)))
+        wireMockRule.stubFor(patch(urlEqualTo(path)).inScenario("scale").whenScenarioStateIs("conflict")
+                .willReturn(json(scale("8", 3))))
+        wireMockRule.stubFor(get(urlEqualTo(path)).willReturn(json(scale("7", 1))))
+
+        assertEquals("8", scaler.scale("x", "5", 3))
+
+        wireMockRule.verify(2, patchRequestedFor(urlEqualTo(path)))
+        wireMockRule.verify(patchRequestedFor(urlEqualTo(path))
+                .withHeader("Content-Type", containing("application/merge-patch+json"))
+                .withRequestBody(equalToJson("""{"metadata":{"resourceVersion":"5"},"spec":{"replicas":3}}""")))
+        wireMockRule.verify(patchRequestedFor(urlEqualTo(path))
+                .withRequestBody(equalToJson("""{"metadata":{"resourceVersion":"7"},"spec":{"replicas":3}}""")))
+    }
+
+    @Test
+    fun givesUpAfterConflicts() {
+        wireMockRule.stubFor(patch(urlEqualTo(path)).willReturn(aResponse().withStatus(409)))
+        wireMockRule.stubFor(get(urlEqualTo(path)).willReturn(json(scale("7", 1))))
+
+        val e = assertFailsWith<KubernetesClientException> { scaler.scale("x", "5", 3) }
+
+        assertEquals(409, e.code)
+        wireMockRule.verify(ScaleSubresource.MAX_ATTEMPTS, patchRequestedFor(urlEqualTo(path)))
+    }
+
+    @Test
+    fun failsWithoutRetry() {
+        wireMockRule.stubFor(patch(urlEqualTo(path)).willReturn(aResponse().withStatus(403)))
+
+        val e = assertFailsWith<KubernetesClientException> { scaler.scale("x", "5", 3) }
+
+        assertEquals(403, e.code)
+        wireMockRule.verify(1, patchRequestedFor(urlEqualTo(path)))
+        wireMockRule.verify(0, getRequestedFor(urlEqualTo(path)))
+    }
+
+    private fun json(body: String) = aResponse().withStatus(200).withHeader("Content-Type", "application/json").withBody(body)
+
+    private fun scale(resourceVersion: String, replicas: Int) =
+            """{"kind":"Scale","apiVersion":"autoscaling/v1","metadata":{"name":"x","namespace":"default",""" +
+                    """"resourceVersion":"$resourceVersion"},"spec":{"replicas":$replicas}}"""
+}
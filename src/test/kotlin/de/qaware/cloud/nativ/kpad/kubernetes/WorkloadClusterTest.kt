@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.kubernetes
+
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import com.github.tomakehurst.wiremock.stubbing.Scenario
+import de.qaware.cloud.nativ.kpad.ClusterAppEvent
+import de.qaware.cloud.nativ.kpad.ClusterNode
+import de.qaware.cloud.nativ.kpad.ClusterPodEvent
+import de.qaware.cloud.nativ.kpad.RecordingEvent
+import io.fabric8.kubernetes.client.ConfigBuilder
+import io.fabric8.kubernetes.client.DefaultKubernetesClient
+import io.fabric8.kubernetes.client.KubernetesClientException
+import okhttp3.OkHttpClient
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import java.util.concurrent.Executors
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class WorkloadClusterTest {
+
+    @Rule @JvmField
+    val wireMockRule = WireMockRule(8089)
+
+    private val deployments = "/apis/apps/v1/namespaces/default/deployments"
+    private val scheduler = Executors.newScheduledThreadPool(2)
+    private val client = DefaultKubernetesClient(ConfigBuilder().withMasterUrl("http://localhost:8089").build())
+    private val events = RecordingEvent<ClusterAppEvent>()
+    private val podEvents = RecordingEvent<ClusterPodEvent>()
+    private var cluster: WorkloadCluster? = null
+
+    @Before
+    fun init() {
+        // watches that are not stubbed by a test hang until the cluster is shut down
+        wireMockRule.stubFor(get(anyUrl()).atPriority(10).withQueryParam("watch", equalTo("true"))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(10000)))
+        wireMockRule.stubFor(list(deployments).willReturn(json(page("10",
+                deployment("web", "5", 1, 1, """{"LAUNCHPAD_ENABLE":"true","LAUNCHPAD_ROW":"2"}"""),
+                deployment("api", "6", 1, 1, """{"LAUNCHPAD_ENABLE":"true"}"""),
+                deployment("web-abc", "7", 1, 1, """{"LAUNCHPAD_ENABLE":"true"}""",
+                        """[{"kind":"Deployment","name":"web","uid":"u-web","controller":true}]""")))))
+        wireMockRule.stubFor(list("/api/v1/namespaces/default/pods").willReturn(json(page("20", pod("web-abc-1")))))
+        wireMockRule.stubFor(list("/api/v1/namespaces/default/events").willReturn(json(page("30"))))
+        // the watch of the Deployments stays silent until they are scaled
+        wireMockRule.stubFor(watch("10").inScenario("scale").whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(200).withFixedDelay(100)))
+    }
+
+    @After
+    fun shutdown() {
+        cluster?.shutdown()
+        scheduler.shutdownNow()
+    }
+
+    @Test
+    fun followsRolloutAfterScale() {
+        wireMockRule.stubFor(patch(urlEqualTo("$deployments/web/scale")).inScenario("scale").willSetStateTo("scaled")
+                .willReturn(json("""{"kind":"Scale","apiVersion":"autoscaling/v1","metadata":{"name":"web","resourceVersion":"11"}}""")))
+        wireMockRule.stubFor(watch("10").inScenario("scale").whenScenarioStateIs("scaled")
+                .willReturn(json(event(deployment("web", "12", 3, 2)))))
+        wireMockRule.stubFor(watch("12").willReturn(json(event(deployment("web", "13", 3, 3)))))
+        // status updates of a rolled out workload are filtered
+        wireMockRule.stubFor(watch("13").willReturn(json(event(deployment("web", "14", 3, 2)))))
+
+        val cluster = start()
+        assertEquals(listOf("ADDED 2 1", "ADDED 0 1"), fired())
+        assertTrue(podEvents.fired.contains(ClusterPodEvent(2, listOf(ClusterNode.Phase.Running))))
+        assertEquals(1, cluster.replicas(2))
+
+        cluster.scale(2, 3)
+
+        assertEquals(3, cluster.replicas(2))
+        awaitWatch("14")
+        assertEquals(listOf("ADDED 2 1", "ADDED 0 1", "DEPLOYED 2 2", "DEPLOYED 2 3"), fired())
+        wireMockRule.verify(patchRequestedFor(urlEqualTo("$deployments/web/scale"))
+                .withRequestBody(equalToJson("""{"metadata":{"resourceVersion":"5"},"spec":{"replicas":3}}""")))
+    }
+
+    @Test
+    fun stopsFollowingAfterFailedScale() {
+        wireMockRule.stubFor(patch(urlEqualTo("$deployments/web/scale")).inScenario("scale").willSetStateTo("failed")
+                .willReturn(aResponse().withStatus(500)))
+        wireMockRule.stubFor(watch("10").inScenario("scale").whenScenarioStateIs("failed")
+                .willReturn(json(event(deployment("web", "12", 1, 0)))))
+
+        val cluster = start()
+        assertFailsWith<KubernetesClientException> { cluster.scale(2, 3) }
+
+        awaitWatch("12")
+        assertEquals(1, cluster.replicas(2))
+        assertEquals(listOf("ADDED 2 1", "ADDED 0 1"), fired())
+    }
+
+    private fun start(): WorkloadCluster {
+        val cluster = object : WorkloadCluster(events, podEvents, LoggerFactory.getLogger(WorkloadClusterTest::class.java)) {
+            init {
+                connect(OkHttpClient(), scheduler)
+                add("Deployment", client.apps().deployments().inNamespace("default"))
+                start(client.pods().inNamespace("default"), client.events().inNamespace("default"))
+            }
+        }
+        this.cluster = cluster
+        return cluster
+    }
+
+    private fun fired() = events.fired.map { "${it.type} ${it.index} ${it.replicas}" }
+
+    private fun awaitWatch(resourceVersion: String) {
+        val end = System.currentTimeMillis() + 5000
+        while (wireMockRule.findAll(getRequestedFor(urlPathEqualTo(deployments))
+                .withQueryParam("resourceVersion", equalTo(resourceVersion))).isEmpty()) {
+            assertTrue(System.currentTimeMillis() < end, "Timed out, events: ${fired()}")
+            Thread.sleep(10)
+        }
+    }
+
+    private fun list(path: String) = get(urlPathEqualTo(path)).withQueryParam("limit", equalTo("100"))
+
+    private fun watch(resourceVersion: String) = get(urlPathEqualTo(deployments)).atPriority(1)
+            .withQueryParam("watch", equalTo("true")).withQueryParam("resourceVersion", equalTo(resourceVersion))
+
+    private fun json(body: String) = aResponse().withStatus(200).withHeader("Content-Type", "application/json").withBody(body)
+
+    private fun page(resourceVersion: String, vararg items: String) =
+            """{"metadata":{"resourceVersion":"$resourceVersion"},"items":[${items.joinToString(",")}]}"""
+
+    private fun event(obj: String) = """{"type":"MODIFIED","object":$obj}""" + "\n"
+
+    private fun deployment(name: String, resourceVersion: String, replicas: Int, ready: Int,
+                           labels: String = """{"LAUNCHPAD_ENABLE":"true","LAUNCHPAD_ROW":"2"}""", owners: String = "[]"): String {
+        // every change of the replicas is a new generation that is observed at once
+        val generation = if (replicas == 1) 1 else 2
+        return """{"kind":"Deployment","apiVersion":"apps/v1","metadata":{"name":"$name","namespace":"default",""" +
+                """"uid":"u-$name","resourceVersion":"$resourceVersion","generation":$generation,"labels":$labels,""" +
+                """"ownerReferences":$owners},"spec":{"replicas":$replicas},"status":{"observedGeneration":$generation,""" +
+                """"replicas":$replicas,"updatedReplicas":$replicas,"readyReplicas":$ready}}"""
+    }
+
+    private fun pod(name: String) =
+            """{"kind":"Pod","apiVersion":"v1","metadata":{"name":"$name","namespace":"default","uid":"u-$name",""" +
+                    """"labels":{"LAUNCHPAD_ENABLE":"true","pod-template-hash":"abc"},"ownerReferences":""" +
+                    """[{"kind":"ReplicaSet","name":"web-abc","uid":"u-web-abc","controller":true}]},""" +
+                    """"status":{"phase":"Running","containerStatuses":[{"ready":true}]}}"""
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.launchpad
+
+import org.junit.Test
+import javax.sound.midi.MidiMessage
+import javax.sound.midi.ShortMessage
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class FrameBufferTest {
+
+    private val frame = FrameBuffer()
+
+    @Test
+    fun sendsChangedLedsInOneMessage() {
+        assertTrue(frame.set(11, 5))
+        assertFalse(frame.set(104, 45))
+        frame.set(11, 9)
+
+        assertEquals(listOf(listOf(10, 11, 9, 104, 45)), bodies(frame.frame()))
+        assertTrue(frame.frame().isEmpty())
+    }
+
+    @Test
+    fun skipsUnchangedLeds() {
+        frame.set(11, 5)
+        frame.frame()
+
+        assertTrue(frame.set(11, 5))
+        assertTrue(frame.frame().isEmpty())
+
+        frame.set(11, 5)
+        frame.set(12, 5)
+        assertEquals(listOf(listOf(10, 12, 5)), bodies(frame.frame()))
+    }
+
+    @Test
+    fun clearsWithOneMessage() {
+        frame.set(11, 5)
+        frame.clear()
+        assertEquals(listOf(listOf(14, 0)), bodies(frame.frame()))
+
+        frame.set(11, 0)
+        assertTrue(frame.frame().isEmpty())
+    }
+
+    @Test
+    fun setsAllLedsToOneColor() {
+        FrameBuffer.IDS.forEach { frame.set(it, 13) }
+
+        assertEquals(80, FrameBuffer.IDS.size)
+        assertEquals(listOf(listOf(14, 13)), bodies(frame.frame()))
+    }
+
+    @Test
+    fun sendsEffectsAfterColors() {
+        frame.set(11, 5)
+        frame.effect(11, FrameBuffer.Effect.BLINK, 9)
+        frame.effect(104, FrameBuffer.Effect.PULSE, 13)
+
+        val messages = frame.frame()
+        assertEquals(listOf(10, 11, 5), bodies(messages.take(1)).single())
+        assertEquals(listOf(145, 11, 9), (messages[1] as ShortMessage).message.map { it.toInt() and 0xff })
+        assertEquals(listOf(178, 104, 13), (messages[2] as ShortMessage).message.map { it.toInt() and 0xff })
+
+        frame.effect(11, FrameBuffer.Effect.BLINK, 9)
+        assertTrue(frame.frame().isEmpty())
+    }
+
+    @Test
+    fun colorStopsEffect() {
+        frame.set(11, 5)
+        frame.effect(11, FrameBuffer.Effect.PULSE, 5)
+        frame.frame()
+
+        frame.set(11, 5)
+        assertEquals(listOf(listOf(10, 11, 5)), bodies(frame.frame()))
+    }
+
+    /**
+     * @return the commands and their data without the preamble and the end of the SysEx messages
+     */
+    private fun bodies(messages: List<MidiMessage>): List<List<Int>> = messages.map { message ->
+        val bytes = message.message.map { it.toInt() and 0xff }
+        assertEquals(listOf(240, 0, 32, 41, 2, 24), bytes.take(6))
+        assertEquals(247, bytes.last())
+        bytes.subList(6, bytes.size - 1)
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.launchpad
+
+import de.qaware.cloud.nativ.kpad.launchpad.MidiWriter.Lane
+import org.junit.After
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import javax.sound.midi.MidiMessage
+import javax.sound.midi.Receiver
+import javax.sound.midi.ShortMessage
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class MidiWriterTest {
+
+    private val written = CopyOnWriteArrayList<Int>()
+
+    // blocks the writer thread until it is released
+    private val blocked = CountDownLatch(1)
+    private val released = CountDownLatch(1)
+
+    private val receiver = object : Receiver {
+        override fun send(message: MidiMessage, timeStamp: Long) {
+            val id = (message as ShortMessage).data1
+            if (id == BLOCK) {
+                blocked.countDown()
+                released.await()
+            }
+            written.add(id)
+        }
+
+        override fun close() {
+        }
+    }
+
+    private val writer = MidiWriter(receiver, LoggerFactory.getLogger(MidiWriterTest::class.java), 4)
+
+    @After
+    fun close() {
+        released.countDown()
+        writer.close()
+    }
+
+    @Test
+    fun writesFeedbackFirst() {
+        block()
+        writer.send(Lane.BULK) { message(1) }
+        writer.send(Lane.BULK) { message(2) }
+        writer.send(Lane.FEEDBACK) { message(3) }
+
+        release()
+        assertEquals(listOf(BLOCK, 3, 1, 2), written)
+        assertEquals(4, writer.metrics().written)
+    }
+
+    @Test
+    fun supersedesQueuedMessages() {
+        block()
+        writer.send(Lane.BULK, "frame") { message(1) }
+        writer.send(Lane.BULK) { message(2) }
+        writer.send(Lane.BULK, "frame") { message(3) }
+        writer.send(Lane.FEEDBACK, "frame") { message(4) }
+
+        release()
+        assertEquals(listOf(BLOCK, 4, 2), written)
+        assertEquals(2, writer.metrics().dropped)
+    }
+
+    @Test
+    fun dropsOldestWhenFull() {
+        block()
+        1.rangeTo(4).forEach { id -> writer.send(Lane.BULK) { message(id) } }
+
+        val start = System.nanoTime()
+        writer.send(Lane.BULK) { message(5) }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(MidiWriter.BACKPRESSURE))
+
+        release()
+        assertEquals(listOf(BLOCK, 2, 3, 4, 5), written)
+        assertEquals(4, writer.metrics().maxDepth)
+        assertEquals(1, writer.metrics().dropped)
+    }
+
+    @Test
+    fun delaysBulkMessages() {
+        writer.start()
+        writer.send(Lane.BULK, delay = 200) { message(1) }
+        writer.send(Lane.FEEDBACK) { message(2) }
+
+        writer.flush(1000)
+        assertEquals(listOf(2, 1), written)
+    }
+
+    private fun block() {
+        writer.start()
+        writer.send(Lane.FEEDBACK) { message(BLOCK) }
+        assertTrue(blocked.await(1, TimeUnit.SECONDS))
+    }
+
+    private fun release() {
+        released.countDown()
+        writer.flush(1000)
+    }
+
+    private fun message(id: Int) = listOf(ShortMessage(ShortMessage.NOTE_ON, 0, id, 5))
+
+    companion object {
+        const val BLOCK = 99
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import java.io.File
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class AppDiffTest {
+    val port = 8089
+
+    var client: MarathonClient? = null
+
+    @Rule @JvmField
+    val wireMockRule = WireMockRule(port)
+
+    @Before
+    fun init() {
+        val dcosConfigFilePath = File(javaClass.classLoader.getResource(".dcos/dcos.toml").toURI()).absolutePath
+        client = MarathonProducer(dcosConfigFilePath).marathonClient()
+    }
+
+    @Test
+    fun firstSnapshotAddsAllApps() {
+        val apps = listApps("ListManyApps.json")
+        val diff = AppDiff.of(emptyMap(), apps)
+
+        assertEquals(1000, diff.added.size)
+        assertTrue(diff.changed.isEmpty())
+        assertTrue(diff.removed.isEmpty())
+        assertEquals(apps.map { it.id }, diff.apps.keys.toList())
+    }
+
+    @Test
+    fun unchangedSnapshotKeepsInstances() {
+        val previous = AppDiff.of(emptyMap(), listApps("ListManyApps.json")).apps
+        val diff = AppDiff.of(previous, listApps("ListManyApps.json"))
+
+        assertTrue(diff.added.isEmpty())
+        assertTrue(diff.changed.isEmpty())
+        assertTrue(diff.removed.isEmpty())
+        previous.values.forEach { assertSame(it, diff.apps[it.id]) }
+    }
+
+    @Test
+    fun changedSnapshot() {
+        val previous = AppDiff.of(emptyMap(), listApps("ListManyApps.json")).apps
+        val diff = AppDiff.of(previous, listApps("ListManyAppsChanged.json"))
+
+        assertEquals(0.until(10).map { "/group-0/app-$it" } + "/group-0/app-20", diff.changed.map { it.id })
+        assertEquals(10.until(15).map { "/group-0/app-$it" }, diff.removed.map { it.id })
+        assertEquals(1000.until(1003).map { "/group-10/app-$it" }, diff.added.map { it.id })
+        assertEquals(2, diff.apps["/group-0/app-0"]!!.instances)
+        assertSame(previous["/group-9/app-999"], diff.apps["/group-9/app-999"])
+        assertEquals(998, diff.apps.size)
+    }
+
+    private fun listApps(file: String): List<MarathonClient.App> {
+        stubFor(get(urlEqualTo("/service/marathon/v2/apps?label=LAUNCHPAD_ENABLE==true"))
+                .willReturn(aResponse().withHeader("Content-Type", "application/json").withBodyFile(file)))
+        return client!!.listApps().execute().body().apps
+    }
+}
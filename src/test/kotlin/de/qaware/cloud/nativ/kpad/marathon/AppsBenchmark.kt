@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.google.gson.Gson
+import de.qaware.cloud.nativ.kpad.Benchmarks
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import okio.Okio
+import retrofit2.Retrofit
+import java.io.ByteArrayInputStream
+
+/**
+ * Compares decoding a large /v2/apps response with reflective Gson and with the [AppsConverterFactory].
+ * Run the main method, it prints the time and the allocated bytes per decoded list.
+ */
+object AppsBenchmark {
+
+    private const val APPS = 1000
+    private const val WARMUP = 200
+    private const val ROUNDS = 100
+
+    private val JSON = MediaType.parse("application/json")
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val body = json(APPS).toByteArray()
+        println("/v2/apps: ${body.size} bytes")
+
+        val gson = Gson()
+        measure("gson", body) { gson.fromJson(it.charStream(), MarathonClient.Apps::class.java) }
+
+        val retrofit = Retrofit.Builder().baseUrl("http://localhost/").build()
+        @Suppress("UNCHECKED_CAST")
+        val converter = AppsConverterFactory().responseBodyConverter(MarathonClient.Apps::class.java, emptyArray(), retrofit)
+                as retrofit2.Converter<ResponseBody, MarathonClient.Apps>
+        measure("stream", body) { converter.convert(it) }
+    }
+
+    private fun measure(name: String, body: ByteArray, decode: (ResponseBody) -> MarathonClient.Apps) {
+        Benchmarks.measure(name, WARMUP, ROUNDS, APPS) { decode(body(body)).apps.size }
+    }
+
+    private fun body(bytes: ByteArray) =
+            ResponseBody.create(JSON, bytes.size.toLong(), Okio.buffer(Okio.source(ByteArrayInputStream(bytes))))
+
+    /**
+     * A /v2/apps response with the container, health check and environment subtrees Marathon returns
+     * for real apps.
+     */
+    fun json(apps: Int): String = 0.until(apps).joinToString(",", """{"apps":[""", "]}") {
+        """{"id":"/group-${it / 100}/app-$it","cmd":null,"args":["--port","8080"],"user":null,""" +
+                """"env":{"JAVA_OPTS":"-Xmx512m","NOTE":"${"x".repeat(200)}"},"instances":${it % 4},"cpus":0.5,"mem":512,""" +
+                """"container":{"type":"DOCKER","volumes":[],"docker":{"image":"registry/app:1.0","network":"BRIDGE",""" +
+                """"portMappings":[{"containerPort":8080,"hostPort":0,"servicePort":10000,"protocol":"tcp","labels":{}}],""" +
+                """"privileged":false,"parameters":[],"forcePullImage":false}},""" +
+                """"healthChecks":[{"gracePeriodSeconds":300,"intervalSeconds":60,"maxConsecutiveFailures":3,""" +
+                """"portIndex":0,"timeoutSeconds":20,"delaySeconds":15,"protocol":"HTTP","path":"/health"}],""" +
+                """"labels":{"LAUNCHPAD_ENABLE":"true","LAUNCHPAD_COLOR":"BLUE","HAPROXY_GROUP":"external"},""" +
+                """"upgradeStrategy":{"minimumHealthCapacity":1,"maximumOverCapacity":1},""" +
+                """"version":"2018-01-01T00:00:00.${"%03d".format(it % 1000)}Z",""" +
+                """"versionInfo":{"lastScalingAt":"2018-01-01T00:00:00.000Z","lastConfigChangeAt":"2018-01-01T00:00:00.000Z"},""" +
+                """"tasksStaged":0,"tasksRunning":${it % 4},"tasksHealthy":${it % 4},"tasksUnhealthy":0,""" +
+                """"deployments":[${if (it % 10 == 0) """{"id":"deployment-$it"}""" else ""}]}"""
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.google.gson.Gson
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import retrofit2.Retrofit
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class AppsConverterFactoryTest {
+
+    private val factory = AppsConverterFactory()
+    private val retrofit = Retrofit.Builder().baseUrl("http://localhost/").build()
+
+    @Test
+    fun decodesLikeGson() {
+        val json = AppsBenchmark.json(100)
+        val apps = convert<MarathonClient.Apps>(json)
+
+        assertEquals(Gson().fromJson(json, MarathonClient.Apps::class.java), apps)
+        assertEquals(listOf(MarathonClient.Deployment("deployment-10", null, null)), apps.apps[10].deployments)
+        assertEquals("BLUE", apps.apps[1].labels["LAUNCHPAD_COLOR"])
+    }
+
+    @Test
+    fun decodesSingleApp() {
+        val app = convert<MarathonClient.AppResult>("""{"app":{"id":"/test","instances":2,"labels":null,"unknown":{"a":[1,2]}}}""").app
+
+        assertEquals(MarathonClient.App("/test", 2, emptyList(), emptyMap()), app)
+    }
+
+    @Test
+    fun leavesOtherTypes() {
+        assertNull(factory.responseBodyConverter(MarathonClient.Tasks::class.java, emptyArray(), retrofit))
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private inline fun <reified T> convert(json: String): T {
+        val converter = factory.responseBodyConverter(T::class.java, emptyArray(), retrofit) as retrofit2.Converter<ResponseBody, T>
+        return converter.convert(ResponseBody.create(MediaType.parse("application/json"), json))
+    }
+}
@@ -30,6 +30,7 @@ import org.junit.Test
 import java.io.File
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
 
 class MarathonClientTest {
     val port = 8089
@@ -100,4 +101,32 @@ class MarathonClientTest {
         assertEquals(deployment, testApp.deployments.first(),
                 "The parsed data received from the testing api does not match the test object")
     }
+
+    @Test
+    fun updateAppsTest() {
+        val updates = listOf(MarathonClient.AppUpdate("testapp", 0), MarathonClient.AppUpdate("testapp2", 0))
+        val result = client!!.updateApps(updates, true).execute()
+
+        assertTrue(result.isSuccessful, "Scaling several apps failed")
+        assertEquals("testapps-d1", result.body().deploymentId)
+    }
+
+    @Test
+    fun listGroupsTest() {
+        val root = client!!.listGroups().execute().body()
+        val shop = root.groups.single()
+
+        assertEquals("/shop", shop.id)
+        assertEquals(listOf("/shop/web"), shop.apps.map { it.id })
+        assertEquals("BLUE", shop.apps.first().labels["LAUNCHPAD_COLOR"])
+        assertEquals(listOf("/shop/backend/orders"), shop.groups.single().apps.map { it.id })
+    }
+
+    @Test
+    fun updateGroupTest() {
+        val result = client!!.updateGroup("shop", MarathonClient.GroupUpdate(1.5), true).execute()
+
+        assertTrue(result.isSuccessful, "Scaling the group failed")
+        assertEquals("shop-d1", result.body().deploymentId)
+    }
 }
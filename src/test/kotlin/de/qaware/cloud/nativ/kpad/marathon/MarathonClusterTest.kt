@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import de.qaware.cloud.nativ.kpad.ClusterAppEvent
+import de.qaware.cloud.nativ.kpad.ClusterPodEvent
+import de.qaware.cloud.nativ.kpad.RecordingEvent
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.util.concurrent.Executors
+import kotlin.test.assertTrue
+
+class MarathonClusterTest {
+
+    @Rule @JvmField
+    val wireMockRule = WireMockRule(8089)
+
+    private val scheduler = Executors.newScheduledThreadPool(4)
+    private val events = RecordingEvent<ClusterAppEvent>()
+    private val producer = MarathonProducer(File(javaClass.classLoader.getResource(".dcos/dcos.toml").toURI()).absolutePath)
+    private var cluster = cluster("false")
+
+    @Before
+    fun init() {
+        wireMockRule.stubFor(get(urlPathEqualTo("/service/marathon/v2/tasks")).willReturn(aResponse().withStatus(200)
+                .withHeader("Content-Type", "application/json").withBody("""{"tasks":[]}""")))
+    }
+
+    @After
+    fun shutdown() {
+        cluster.destroy()
+        scheduler.shutdownNow()
+    }
+
+    @Test
+    fun resetRefillsAtOnce() {
+        cluster.init()
+        await(5000) { cluster.appExists(0) }
+        // an idle cluster backs off
+        await(5000) { cluster.pollInterval() >= 4 * MarathonCluster.MIN_POLL_PERIOD }
+
+        // the rows may be cleared and refilled faster than they are checked, the app is added again
+        val added = events.fired.count { it.type == ClusterAppEvent.Type.ADDED }
+        cluster.reset()
+        await(MarathonCluster.MIN_POLL_PERIOD) { events.fired.count { it.type == ClusterAppEvent.Type.ADDED } > added }
+        assertTrue(cluster.appExists(0))
+    }
+
+    @Test
+    fun listsTasksOnStatusUpdates() {
+        // the stream sends one status update after the first listing of the tasks
+        wireMockRule.stubFor(get(urlPathEqualTo("/service/marathon/v2/events")).atPriority(1).willReturn(aResponse()
+                .withStatus(200).withHeader("Content-Type", "text/event-stream").withFixedDelay(1500)
+                .withBody("event: status_update_event\ndata: {\"eventType\":\"status_update_event\",\"appId\":\"testapp2\",\"taskStatus\":\"TASK_RUNNING\"}\n\n")))
+        cluster = cluster("true")
+
+        cluster.init()
+        // listed by the first update, the reconcile when connected and the status update
+        await(4000) { wireMockRule.findAll(getRequestedFor(urlPathEqualTo("/service/marathon/v2/tasks"))).size >= 3 }
+        wireMockRule.verify(0, getRequestedFor(urlPathEqualTo("/service/marathon/v2/apps/testapp2")))
+    }
+
+    private fun cluster(eventStream: String) = MarathonCluster(producer.marathonClient(), producer.marathonEvents(),
+            eventStream, "", scheduler, events, RecordingEvent<ClusterPodEvent>(), LoggerFactory.getLogger(MarathonClusterTest::class.java))
+
+    private fun await(timeout: Long, condition: () -> Boolean) {
+        val end = System.currentTimeMillis() + timeout
+        while (!condition()) {
+            assertTrue(System.currentTimeMillis() < end, "Timed out after $timeout ms")
+            Thread.sleep(5)
+        }
+    }
+}
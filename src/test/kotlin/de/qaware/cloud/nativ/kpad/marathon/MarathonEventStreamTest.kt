@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class MarathonEventStreamTest {
+    val port = 8089
+
+    val scheduler = Executors.newScheduledThreadPool(1)
+
+    @Rule @JvmField
+    val wireMockRule = WireMockRule(port)
+
+    @After
+    fun shutdown() {
+        scheduler.shutdownNow()
+    }
+
+    @Test
+    fun streamTest() {
+        val dcosConfigFilePath = File(javaClass.classLoader.getResource(".dcos/dcos.toml").toURI()).absolutePath
+        val stream = MarathonEventStream(MarathonProducer(dcosConfigFilePath).marathonEvents(), scheduler,
+                LoggerFactory.getLogger(MarathonEventStream::class.java))
+
+        val connected = CountDownLatch(1)
+        val received = CountDownLatch(4)
+        val events = Collections.synchronizedList(mutableListOf<MarathonEvents.Event>())
+        stream.open({ connected.countDown() }) {
+            events.add(it)
+            received.countDown()
+        }
+
+        assertTrue(connected.await(5, TimeUnit.SECONDS), "The event stream was not opened")
+        assertTrue(received.await(5, TimeUnit.SECONDS), "Not all events were received")
+        stream.close()
+
+        assertEquals(listOf("event_stream_attached", "api_post_event", "deployment_info", "status_update_event"),
+                events.map { it.eventType })
+        assertEquals(listOf(emptySet(), setOf("testapp"), setOf("testapp"), setOf("testapp2")),
+                events.map { it.apps() })
+        assertEquals(mapOf("LAUNCHPAD_ENABLE" to "true"), events[1].appDefinition?.labels)
+
+        verify(getRequestedFor(urlPathEqualTo("/service/marathon/v2/events"))
+                .withQueryParam("event_type", equalTo("deployment_success")))
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 QAware GmbH, Munich, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.qaware.cloud.nativ.kpad.marathon
+
+import com.github.tomakehurst.wiremock.client.WireMock.*
+import com.github.tomakehurst.wiremock.http.Fault
+import com.github.tomakehurst.wiremock.junit.WireMockRule
+import okhttp3.HttpUrl
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import org.junit.Rule
+import org.junit.Test
+import org.slf4j.LoggerFactory
+import java.io.IOException
+import java.util.concurrent.CompletableFuture
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class MarathonLeaderInterceptorTest {
+
+    @Rule @JvmField
+    val adminRouter = WireMockRule(8089)
+
+    @Rule @JvmField
+    val marathon = WireMockRule(8090)
+
+    private var now = 0L
+
+    private val interceptor = MarathonLeaderInterceptor(HttpUrl.parse("http://localhost:8089/service/marathon/")!!,
+            OkHttpClient(), LoggerFactory.getLogger(MarathonLeaderInterceptorTest::class.java), { now })
+
+    private val client = interceptor.install(OkHttpClient.Builder()).build()
+
+    @Test
+    fun sendsToLeader() {
+        leader("localhost:8090")
+        marathon.stubFor(get(urlEqualTo("/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[]")))
+
+        assertEquals("[]", get("v2/deployments"))
+        assertEquals("[]", get("v2/deployments"))
+
+        adminRouter.verify(1, getRequestedFor(urlEqualTo("/service/marathon/v2/leader")))
+        marathon.verify(2, getRequestedFor(urlEqualTo("/v2/deployments")))
+    }
+
+    @Test
+    fun fallsBackToAdminRouter() {
+        leader("localhost:1")
+        adminRouter.stubFor(get(urlEqualTo("/service/marathon/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[]")))
+
+        assertEquals("[]", get("v2/deployments"))
+        assertEquals("[]", get("v2/deployments"))
+        adminRouter.verify(1, getRequestedFor(urlEqualTo("/service/marathon/v2/leader")))
+
+        now += MarathonLeaderInterceptor.RETRY_PERIOD
+        leader("localhost:8090")
+        marathon.stubFor(get(urlEqualTo("/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[{}]")))
+
+        assertEquals("[{}]", get("v2/deployments"))
+        adminRouter.verify(2, getRequestedFor(urlEqualTo("/service/marathon/v2/leader")))
+    }
+
+    @Test
+    fun followsRedirect() {
+        leader("localhost:8090")
+        marathon.stubFor(put(urlEqualTo("/v2/apps?force=true")).willReturn(aResponse().withStatus(307)
+                .withHeader("Location", "http://127.0.0.1:8089/v2/apps?force=true")))
+        adminRouter.stubFor(put(urlEqualTo("/v2/apps?force=true")).willReturn(aResponse().withStatus(200).withBody("{}")))
+        adminRouter.stubFor(get(urlEqualTo("/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[]")))
+
+        val body = RequestBody.create(MediaType.parse("application/json"), "[]")
+        val request = Request.Builder().url("http://localhost:8089/service/marathon/v2/apps?force=true").put(body).build()
+        assertEquals("{}", client.newCall(request).execute().body()!!.string())
+        assertEquals("[]", get("v2/deployments"))
+
+        marathon.verify(1, putRequestedFor(urlEqualTo("/v2/apps?force=true")))
+        adminRouter.verify(getRequestedFor(urlEqualTo("/v2/deployments")))
+    }
+
+    @Test
+    fun resendsOnlyReads() {
+        leader("127.0.0.1:8090")
+        marathon.stubFor(put(urlEqualTo("/v2/apps?force=true")).willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)))
+        marathon.stubFor(get(urlEqualTo("/v2/deployments")).willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)))
+        adminRouter.stubFor(get(urlEqualTo("/service/marathon/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[]")))
+
+        val body = RequestBody.create(MediaType.parse("application/json"), "[]")
+        val request = Request.Builder().url("http://localhost:8089/service/marathon/v2/apps?force=true").put(body).build()
+        assertFailsWith<IOException> { client.newCall(request).execute() }
+        adminRouter.verify(0, putRequestedFor(urlEqualTo("/service/marathon/v2/apps?force=true")))
+
+        now += MarathonLeaderInterceptor.RETRY_PERIOD
+        assertEquals("[]", get("v2/deployments"))
+        marathon.verify(1, getRequestedFor(urlEqualTo("/v2/deployments")))
+    }
+
+    @Test
+    fun keepsTokenOffPlainHttp() {
+        leader("localhost:8090")
+        adminRouter.stubFor(get(urlEqualTo("/service/marathon/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[]")))
+
+        val request = Request.Builder().url("http://localhost:8089/service/marathon/v2/deployments")
+                .header("Authorization", "token=secret").build()
+        assertEquals("[]", client.newCall(request).execute().body()!!.string())
+
+        marathon.verify(0, getRequestedFor(anyUrl()))
+    }
+
+    @Test
+    fun resendsWritesAfterFailedHandshake() {
+        val tls = MarathonLeaderInterceptor(HttpUrl.parse("http://localhost:8089/service/marathon/")!!, OkHttpClient(),
+                LoggerFactory.getLogger(MarathonLeaderInterceptorTest::class.java), { now }, scheme = "https")
+        val client = tls.install(OkHttpClient.Builder()).build()
+        leader("127.0.0.1:8090")
+        adminRouter.stubFor(put(urlEqualTo("/service/marathon/v2/apps?force=true")).willReturn(aResponse().withStatus(200).withBody("{}")))
+
+        val body = RequestBody.create(MediaType.parse("application/json"), "[]")
+        val request = Request.Builder().url("http://localhost:8089/service/marathon/v2/apps?force=true").put(body).build()
+        assertEquals("{}", client.newCall(request).execute().body()!!.string())
+
+        adminRouter.verify(1, putRequestedFor(urlEqualTo("/service/marathon/v2/apps?force=true")))
+        marathon.verify(0, putRequestedFor(anyUrl()))
+    }
+
+    @Test
+    fun lookupDoesNotBlockRequests() {
+        adminRouter.stubFor(get(urlEqualTo("/service/marathon/v2/leader")).willReturn(aResponse().withStatus(200)
+                .withFixedDelay(1000).withBody("""{"leader":"localhost:8090"}""")))
+        adminRouter.stubFor(get(urlEqualTo("/service/marathon/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[]")))
+        marathon.stubFor(get(urlEqualTo("/v2/deployments")).willReturn(aResponse().withStatus(200).withBody("[{}]")))
+
+        val first = CompletableFuture.supplyAsync { get("v2/deployments") }
+        Thread.sleep(200)
+        val start = System.currentTimeMillis()
+        assertEquals("[]", get("v2/deployments"))
+        assertTrue(System.currentTimeMillis() - start < 500, "Requests should not wait for the lookup")
+
+        assertEquals("[{}]", first.get())
+        assertEquals("[{}]", get("v2/deployments"))
+    }
+
+    private fun leader(address: String) {
+        adminRouter.stubFor(get(urlEqualTo("/service/marathon/v2/leader"))
+                .willReturn(aResponse().withStatus(200).withBody("""{"leader":"$address"}""")))
+    }
+
+    private fun get(path: String): String {
+        val request = Request.Builder().url("http://localhost:8089/service/marathon/$path").build()
+        return client.newCall(request).execute().body()!!.string()
+    }
+}